@@ -0,0 +1,86 @@
+package com.spendy.auth.Config;
+
+import com.spendy.auth.Data.User;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Configuration
+public class MongoIndexConfig {
+
+    // Tipo BSON string
+    private static final int STRING = 2;
+
+    // Gruppi di duplicati riportati nel messaggio d'errore
+    private static final int MAX_REPORTED = 5;
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoIndexConfig(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void createIndexes() {
+        createUserIndexes(mongoTemplate);
+    }
+
+    public static void createUserIndexes(MongoTemplate mongoTemplate) {
+        IndexOperations users = mongoTemplate.indexOps(User.class);
+
+        // Username ed email identificano l'utente: l'indice blocca anche le registrazioni concorrenti.
+        // Gli utenti senza il campo restano fuori dall'indice.
+        createUniqueIndex(mongoTemplate, users, "username");
+        createUniqueIndex(mongoTemplate, users, "email");
+
+        // Ricerca dei coinquilini per chiave della casa; gli utenti senza chiave della versione corrente passano da BCrypt
+        users.createIndex(new Index()
+                .on("house_key", Sort.Direction.ASC)
+                .named("house_key"));
+    }
+
+    private static void createUniqueIndex(MongoTemplate mongoTemplate, IndexOperations users, String field) {
+        // Con l'indice già presente i duplicati non possono esistere: il controllo serve solo la prima volta
+        boolean exists = users.getIndexInfo().stream().anyMatch(index -> field.equals(index.getName()));
+        if (!exists) {
+            checkNoDuplicates(mongoTemplate, field);
+        }
+        users.createIndex(new Index()
+                .on(field, Sort.Direction.ASC)
+                .named(field)
+                .unique()
+                .partial(PartialIndexFilter.of(Criteria.where(field).type(STRING))));
+    }
+
+    // Utenti registrati prima dell'indice con lo stesso valore: Mongo rifiuterebbe l'indice con un errore
+    // E11000 generico, qui si indicano i documenti da unire o correggere prima di riavviare il servizio
+    static void checkNoDuplicates(MongoTemplate mongoTemplate, String field) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where(field).type(STRING)),
+                Aggregation.group(field).count().as("count").push("_id").as("ids"),
+                Aggregation.match(Criteria.where("count").gt(1)),
+                Aggregation.limit(MAX_REPORTED));
+        List<Document> duplicates = mongoTemplate.aggregate(aggregation, "users", Document.class).getMappedResults();
+        if (duplicates.isEmpty()) {
+            return;
+        }
+        String ids = duplicates.stream()
+                .map(d -> d.getList("ids", Object.class).toString())
+                .collect(Collectors.joining(", "));
+        throw new IllegalStateException("Cannot create the unique index on users." + field + ": "
+                + (duplicates.size() < MAX_REPORTED ? duplicates.size() : "at least " + MAX_REPORTED)
+                + " values are shared by more than one user (_id groups: " + ids + "). Merge or rename these users, "
+                + "then restart; find all of them with db.users.aggregate([{ $group: { _id: '$" + field
+                + "', n: { $sum: 1 } } }, { $match: { n: { $gt: 1 } } }])");
+    }
+}
@@ -46,6 +46,8 @@ public class AuthController {
             return Response.status(Response.Status.NOT_FOUND).entity("Utente non trovato").build();
         } else if (result.getStatusAuth() == StatusAuth.INVALID_CREDENTIALS) {
             return Response.status(Response.Status.UNAUTHORIZED).entity("Credenziali errate o non valide").build();
+        } else if (result.getStatusAuth() == StatusAuth.SERVICE_BUSY) {
+            return serviceBusy();
         }
         return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Server error").build();
     }
@@ -69,10 +71,20 @@ public class AuthController {
             return Response.ok("Registration successful").build();
         } else if (result.getStatusAuth() == StatusAuth.USER_ALREADY_EXISTS) {
             return Response.status(Response.Status.CONFLICT).entity("User already exists").build();
+        } else if (result.getStatusAuth() == StatusAuth.SERVICE_BUSY) {
+            return serviceBusy();
         }
         return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("An error occurred").build();
     }
 
+    // Troppe verifiche di password in corso: il client riprova dopo qualche secondo
+    private Response serviceBusy() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", Math.max(1, authService.getRetryAfterSeconds()))
+                .entity("Servizio occupato, riprova tra poco")
+                .build();
+    }
+
     private static boolean validateEmail(String email) {
         if (email == null) return false;
         Matcher matcher = EMAIL_PATTERN.matcher(email);
@@ -90,10 +102,32 @@ public class AuthController {
             return Response.ok(result.getUsers()).build();
         } else if (result.getStatusAuth() == StatusAuth.USERS_NOT_FOUND) {
             return Response.status(Response.Status.NOT_FOUND).entity("No users found for the given house ID").build();
+        } else if (result.getStatusAuth() == StatusAuth.SERVICE_BUSY) {
+            return serviceBusy();
         }
         return null;
     }
 
+    // Scrittura della casa di un utente da parte del servizio House; il gateway non la espone all'esterno
+    @POST
+    @Path("/setHouse")
+    @Consumes("application/json")
+    public Response setHouse(Map<String, String> requestBody) {
+        String username = requestBody.get("username");
+        if (username == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Username mancante").build();
+        }
+        AuthResult result = authService.setHouse(username, requestBody.get("houseId"));
+        if (result.getStatusAuth() == StatusAuth.SUCCESS) {
+            return Response.ok("House updated").build();
+        } else if (result.getStatusAuth() == StatusAuth.USER_NOT_FOUND) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Utente non trovato").build();
+        } else if (result.getStatusAuth() == StatusAuth.SERVICE_BUSY) {
+            return serviceBusy();
+        }
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Server error").build();
+    }
+
     @GET
     @Path("/health")
     public Response healthCheck() {
@@ -4,6 +4,8 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
+import java.util.Date;
+
 @Document(collection = "users")
 public class User
 {
@@ -35,6 +37,22 @@ public class User
     @Field("house_user")
     private String houseUser;
 
+    // HMAC del codice casa, indicizzato: vedi HouseKey
+    @Field("house_key")
+    private String houseKey;
+
+    // Valore di house_user da cui è stata calcolata house_key: se house_user cambia la chiave non vale più
+    @Field("house_key_of")
+    private String houseKeyOf;
+
+    // HouseKey.version() del segreto con cui è stata calcolata house_key
+    @Field("house_key_version")
+    private String houseKeyVersion;
+
+    // Ultimo controllo BCrypt senza corrispondenza: le ricerche partono dagli utenti controllati meno di recente
+    @Field("house_key_checked")
+    private Date houseKeyChecked;
+
     public User() { }
 
     public User(String username, String name, String password, String surname, String email)
@@ -125,6 +143,38 @@ public class User
     public void setHouseUser(String houseUser) {
         this.houseUser = houseUser;
     }
+
+    public String getHouseKey() {
+        return houseKey;
+    }
+
+    public void setHouseKey(String houseKey) {
+        this.houseKey = houseKey;
+    }
+
+    public String getHouseKeyOf() {
+        return houseKeyOf;
+    }
+
+    public void setHouseKeyOf(String houseKeyOf) {
+        this.houseKeyOf = houseKeyOf;
+    }
+
+    public String getHouseKeyVersion() {
+        return houseKeyVersion;
+    }
+
+    public void setHouseKeyVersion(String houseKeyVersion) {
+        this.houseKeyVersion = houseKeyVersion;
+    }
+
+    public Date getHouseKeyChecked() {
+        return houseKeyChecked;
+    }
+
+    public void setHouseKeyChecked(Date houseKeyChecked) {
+        this.houseKeyChecked = houseKeyChecked;
+    }
 }
 
 
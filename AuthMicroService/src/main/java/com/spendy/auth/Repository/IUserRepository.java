@@ -1,10 +1,12 @@
 package com.spendy.auth.Repository;
 
 import com.spendy.auth.Data.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.Update;
 
+import java.util.Date;
 import java.util.List;
 
 public interface IUserRepository extends MongoRepository<User, String>
@@ -13,6 +15,12 @@ public interface IUserRepository extends MongoRepository<User, String>
     @Query(value = "{ 'email' : ?0 }")
     User findByEmail(String email);
 
+    // Login con username o email: un ramo $or per ciascun indice unique
+    String USERNAME_OR_EMAIL = "{ $or : [ { 'username' : ?0 }, { 'email' : ?0 } ] }";
+
+    @Query(value = USERNAME_OR_EMAIL)
+    List<User> findByUsernameOrEmail(String identifier);
+
     @Query(value = "{ 'username' : ?0 }")
     User findByUsername(String username);
 
@@ -22,9 +30,28 @@ public interface IUserRepository extends MongoRepository<User, String>
     @Query(value = "{ 'house_user' : ?0 }")
     User findByHouseUser(String house_user);
 
-    @Update("{ '$set' : { 'house_user' : ?1 } }")
+    // houseHash è l'hash BCrypt del codice casa, mai il codice in chiaro; houseKey è HouseKey.of del codice.
+    // Scritti insieme (vedi AuthService.setHouse): chi cambia casa viene trovato subito dalla query su house_key.
+    // house_key_of riceve lo stesso hash, per riconoscere una chiave rimasta da una casa precedente
+    @Update("{ '$set' : { 'house_user' : ?1, 'house_key' : ?2, 'house_key_of' : ?1, 'house_key_version' : ?3 } }")
     @Query("{ 'username' : ?0 }")
-    void setHouseUser(String username, String houseCode);
+    long setHouseUser(String username, String houseHash, String houseKey, String houseKeyVersion);
+
+    @Query(value = "{ 'house_key' : ?0, 'house_key_version' : ?1 }")
+    List<User> findByHouseKey(String houseKey, String houseKeyVersion);
+
+    // Utenti con una casa ma senza una chiave valida: salvati prima dell'introduzione di house_key,
+    // scritti senza chiave da altri servizi o con una chiave calcolata da un segreto precedente
+    @Query(value = "{ 'house_user' : { $ne : null }, $or : [ { 'house_key' : null }, { 'house_key_version' : { $ne : ?0 } } ] }")
+    List<User> findByHouseUserWithoutHouseKey(String houseKeyVersion, Pageable page);
+
+    @Update("{ '$set' : { 'house_key_checked' : ?1 } }")
+    @Query("{ '_id' : { $in : ?0 } }")
+    void setHouseKeyChecked(List<String> idUsers, Date checkedAt);
+
+    @Update("{ '$set' : { 'house_key' : ?1, 'house_key_of' : ?2, 'house_key_version' : ?3 } }")
+    @Query("{ '_id' : ?0 }")
+    void setHouseKey(String idUser, String houseKey, String houseKeyOf, String houseKeyVersion);
 
     @Query(value = "{ 'house_id' : ?0 }")
     List<User> findByHouseId(String houseId);
@@ -3,70 +3,123 @@ package com.spendy.auth.Service;
 import com.spendy.auth.Data.User;
 import com.spendy.auth.Repository.IUserRepository;
 import com.spendy.auth.Utility.AuthResult;
+import com.spendy.auth.Utility.HouseKey;
 import com.spendy.auth.Utility.StatusAuth;
 import com.spendy.auth.Utility.UserResult;
-import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service("AuthService")
 public class AuthService {
     private final IUserRepository userRepository;
-    private final WebClient webClient;
+    private final TokenIssuer tokenIssuer;
+    private final HouseKey houseKey;
+    private final PasswordHasher passwordHasher;
 
-    public AuthService(IUserRepository userRepository, WebClient webClient) {
+    // Utenti senza chiave verificati con BCrypt in una sola ricerca
+    @Value("${auth.house-key.fallback-limit:100}")
+    private int fallbackLimit = 100;
+
+    public AuthService(IUserRepository userRepository, TokenIssuer tokenIssuer, HouseKey houseKey, PasswordHasher passwordHasher) {
         this.userRepository = userRepository;
-        this.webClient = webClient;
+        this.tokenIssuer = tokenIssuer;
+        this.houseKey = houseKey;
+        this.passwordHasher = passwordHasher;
     }
 
+    // Nessun controllo preventivo: gli indici unique su username ed email rifiutano i duplicati,
+    // anche tra due registrazioni concorrenti
     public AuthResult register(String username, String name, String password, String surname, String email) {
-        if (userRepository.findByUsername(username) != null || userRepository.findByEmail(email) != null) {
-            return new AuthResult(StatusAuth.USER_ALREADY_EXISTS, null);
+        String hashedPassword;
+        try {
+            hashedPassword = passwordHasher.hash(password);
+        } catch (RejectedExecutionException e) {
+            return new AuthResult(StatusAuth.SERVICE_BUSY, null);
         }
-
-        String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
         User user = new User(username, name, hashedPassword, surname, email);
-        userRepository.save(user);
+        try {
+            userRepository.insert(user);
+        } catch (DuplicateKeyException e) {
+            return new AuthResult(StatusAuth.USER_ALREADY_EXISTS, null);
+        }
 
-        String token = generateTokenViaRest(username);
+        String token = tokenIssuer.issue(username);
         return new AuthResult(StatusAuth.SUCCESS, token);
     }
 
     public AuthResult login(String identifier, String password) {
-        User user = userRepository.findByUsername(identifier);
-        if (user == null) {
-            user = userRepository.findByEmail(identifier);
-        }
+        User user = findByUsernameOrEmail(identifier);
         if (user == null) {
             return new AuthResult(StatusAuth.USER_NOT_FOUND, null);
         }
-        if (BCrypt.checkpw(password, user.getPassword())) {
-            String token = generateTokenViaRest(user.getUsername());
+        boolean valid;
+        try {
+            valid = passwordHasher.check(password, user.getPassword());
+        } catch (RejectedExecutionException e) {
+            return new AuthResult(StatusAuth.SERVICE_BUSY, null);
+        }
+        if (valid) {
+            String token = tokenIssuer.issue(user.getUsername());
             return new AuthResult(StatusAuth.SUCCESS, token);
         }
         return new AuthResult(StatusAuth.INVALID_CREDENTIALS, null);
     }
 
-    private String generateTokenViaRest(String username) {
-        Map responseMap = webClient.post()
-                .uri("http://localhost:8080/gateway/generate-token")
-                .bodyValue(Map.of("username", username))
-                .retrieve()
-                .bodyToMono(Map.class)
-                .block(); // blocca fino a ricevere risposta
+    // Una sola query: se l'identificativo è lo username di un utente e l'email di un altro vince lo username
+    private User findByUsernameOrEmail(String identifier) {
+        User byEmail = null;
+        for (User user : userRepository.findByUsernameOrEmail(identifier)) {
+            if (identifier.equals(user.getUsername())) {
+                return user;
+            }
+            byEmail = user;
+        }
+        return byEmail;
+    }
 
-        return (String) responseMap.get("token");
+    // Secondi suggeriti al client in Retry-After quando il pool BCrypt è saturo
+    public int getRetryAfterSeconds() {
+        return passwordHasher.getRetryAfterSeconds();
+    }
+
+    // Punto di scrittura della casa di un utente: l'hash BCrypt e la chiave indicizzata vengono salvati insieme,
+    // così i membri si trovano con la sola query su house_key. houseId null toglie l'utente dalla casa
+    public AuthResult setHouse(String username, String houseId) {
+        String hash = null;
+        String key = null;
+        String version = null;
+        if (houseId != null) {
+            try {
+                hash = passwordHasher.hash(houseId);
+            } catch (RejectedExecutionException e) {
+                return new AuthResult(StatusAuth.SERVICE_BUSY, null);
+            }
+            key = houseKey.of(houseId);
+            version = houseKey.version();
+        }
+        if (userRepository.setHouseUser(username, hash, key, version) == 0) {
+            return new AuthResult(StatusAuth.USER_NOT_FOUND, null);
+        }
+        return new AuthResult(StatusAuth.SUCCESS, null);
     }
 
     public UserResult getUserByHouseId(String houseId) {
 
-        List<User> users = userRepository.findAll()
-                .stream()
-                .filter(u -> BCrypt.checkpw(houseId, u.getHouseUser()))
-                .toList();
+        List<User> users;
+        try {
+            users = findHouseMembers(houseId);
+        } catch (RejectedExecutionException e) {
+            return new UserResult(StatusAuth.SERVICE_BUSY, null);
+        }
 
         if (users != null) {
             return new UserResult(StatusAuth.USERS_FOUNDED, users);
@@ -76,10 +129,60 @@ public class AuthService {
 
     public List<User> getCoinquilinibyHouseId(String houseId)
     {
-        List<User> list = userRepository.findAll().stream()
-                .filter(u -> BCrypt.checkpw(houseId, u.getHouseUser()))
-                .toList();
+        List<User> list = findHouseMembers(houseId);
         list.forEach(System.out::println);
         return list;
     }
+
+    // Una query sull'indice di house_key. BCrypt resta solo per gli utenti scritti senza chiave (prima di setHouse,
+    // o da un segreto precedente): a chi corrisponde viene salvata la chiave, così non verrà più controllato.
+    // Ogni ricerca ne controlla al massimo fallbackLimit, partendo da quelli controllati meno di recente:
+    // chi non corrisponde passa in fondo e le ricerche successive proseguono con gli altri.
+    // Le verifiche passano dal pool di PasswordHasher a blocchi; se è saturo la ricerca viene rifiutata.
+    private List<User> findHouseMembers(String houseId) {
+        if (houseId == null) {
+            return List.of();
+        }
+        String key = houseKey.of(houseId);
+        String version = houseKey.version();
+
+        List<User> members = new ArrayList<>();
+        List<User> toCheck = new ArrayList<>();
+        PageRequest oldestChecked = PageRequest.of(0, fallbackLimit, Sort.by(Sort.Direction.ASC, "houseKeyChecked"));
+        for (User user : userRepository.findByHouseUserWithoutHouseKey(version, oldestChecked)) {
+            if (user.getHouseUser() != null) {
+                toCheck.add(user);
+            }
+        }
+        for (User user : userRepository.findByHouseKey(key, version)) {
+            if (Objects.equals(user.getHouseUser(), user.getHouseKeyOf())) {
+                members.add(user);
+            } else if (user.getHouseUser() != null) {
+                toCheck.add(user);
+            } else {
+                userRepository.setHouseKey(user.getId_user(), null, null, null);
+            }
+        }
+
+        List<String> hashes = toCheck.stream().map(User::getHouseUser).toList();
+        boolean[] matches = passwordHasher.checkAll(houseId, hashes);
+        List<String> checked = new ArrayList<>();
+        for (int i = 0; i < matches.length; i++) {
+            User user = toCheck.get(i);
+            if (matches[i]) {
+                userRepository.setHouseKey(user.getId_user(), key, user.getHouseUser(), version);
+                members.add(user);
+                continue;
+            }
+            if (key.equals(user.getHouseKey())) {
+                // Chiave di una casa precedente
+                userRepository.setHouseKey(user.getId_user(), null, null, null);
+            }
+            checked.add(user.getId_user());
+        }
+        if (!checked.isEmpty()) {
+            userRepository.setHouseKeyChecked(checked, new Date());
+        }
+        return members;
+    }
 }
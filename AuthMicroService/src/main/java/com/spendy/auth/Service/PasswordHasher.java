@@ -0,0 +1,126 @@
+package com.spendy.auth.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Esegue hashing e verifica BCrypt su un pool dedicato, grande quanto i core, con una coda limitata.
+ * I thread delle richieste aspettano il risultato senza consumare CPU; quando la coda è piena
+ * la richiesta viene rifiutata subito con RejectedExecutionException invece di accodarsi.
+ */
+@Component
+public class PasswordHasher {
+
+    private final ThreadPoolExecutor executor;
+    private final int size;
+    private final int cost;
+    private final int retryAfterSeconds;
+    private final Timer hashTimer;
+    private final Timer checkTimer;
+    private final Counter rejected;
+
+    public PasswordHasher(@Value("${auth.bcrypt.cost:10}") int cost,
+                          @Value("${auth.bcrypt.threads:0}") int threads,
+                          @Value("${auth.bcrypt.queue-capacity:64}") int queueCapacity,
+                          @Value("${auth.bcrypt.retry-after-seconds:1}") int retryAfterSeconds,
+                          MeterRegistry meterRegistry) {
+        this.cost = cost;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        this.size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "bcrypt-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.bcrypt.queue.size", executor, e -> e.getQueue().size())
+                .description("Operazioni BCrypt in attesa di un thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.bcrypt.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        this.hashTimer = Timer.builder("auth.bcrypt.duration").tag("operation", "hash").register(meterRegistry);
+        this.checkTimer = Timer.builder("auth.bcrypt.duration").tag("operation", "check").register(meterRegistry);
+        this.rejected = Counter.builder("auth.bcrypt.rejected").register(meterRegistry);
+    }
+
+    public String hash(String password) {
+        return run(() -> hashTimer.record(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost))));
+    }
+
+    public boolean check(String password, String hashed) {
+        return run(() -> checkTimer.record(() -> BCrypt.checkpw(password, hashed)));
+    }
+
+    // Verifica la stessa password su più hash, al massimo un blocco grande quanto il pool alla volta:
+    // una sola richiesta non riempie la coda e le altre operazioni BCrypt restano servite
+    public boolean[] checkAll(String password, List<String> hashed) {
+        boolean[] result = new boolean[hashed.size()];
+        for (int from = 0; from < hashed.size(); from += size) {
+            int to = Math.min(from + size, hashed.size());
+            List<Future<Boolean>> batch = new ArrayList<>(to - from);
+            try {
+                for (int i = from; i < to; i++) {
+                    String hash = hashed.get(i);
+                    batch.add(submit(() -> checkTimer.record(() -> BCrypt.checkpw(password, hash))));
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    result[from + i] = await(batch.get(i));
+                }
+            } finally {
+                batch.forEach(f -> f.cancel(true));
+            }
+        }
+        return result;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    private <T> T run(Callable<T> task) {
+        return await(submit(task));
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,41 @@
+package com.spendy.auth.Service;
+
+import com.spendy.security.JwtSecrets;
+import com.spendy.security.KeyRing;
+import com.spendy.security.TokenSigner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Firma i token di login e registrazione nel servizio stesso, con la configurazione
+ * del TokenManager del gateway: subject = username e scadenza dopo jwt.expiration millisecondi.
+ * Con jwt.keys.dir configurata firma in RS256 con la chiave attiva (kid nell'header),
+ * altrimenti in HS256 sulla jwt.secret. Il gateway li verifica come quelli firmati da lui.
+ */
+@Component
+public class TokenIssuer {
+
+    private final TokenSigner signer;
+    private final long expiration;
+
+    public TokenIssuer(@Value("${jwt.secret:}") String secret,
+                       @Value("${jwt.keys.dir:}") String keysDir,
+                       @Value("${jwt.keys.active:}") String activeKid,
+                       @Value("${jwt.expiration}") long expiration) throws IOException {
+        if (keysDir != null && !keysDir.isBlank()) {
+            this.signer = TokenSigner.rs256(KeyRing.load(Path.of(keysDir), activeKid));
+        } else if (secret != null && !secret.isBlank()) {
+            this.signer = TokenSigner.hs256(JwtSecrets.decode(secret));
+        } else {
+            throw new IllegalStateException("Neither jwt.keys.dir nor jwt.secret is configured");
+        }
+        this.expiration = expiration;
+    }
+
+    public String issue(String username) {
+        return signer.sign(username, System.currentTimeMillis() + expiration);
+    }
+}
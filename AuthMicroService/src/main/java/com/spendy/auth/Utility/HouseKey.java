@@ -0,0 +1,52 @@
+package com.spendy.auth.Utility;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * HMAC-SHA256 del codice casa con una chiave del servizio. A differenza dell'hash BCrypt salvato
+ * in house_user è deterministico, quindi si può indicizzare e cercare con una query di uguaglianza;
+ * senza la chiave non permette di risalire al codice. La versione identifica la chiave: viene salvata
+ * accanto a house_key e, se il segreto cambia, le chiavi precedenti tornano a passare da BCrypt.
+ */
+@Component
+public class HouseKey {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final String version;
+
+    public HouseKey(@Value("${auth.house-key.secret}") String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("auth.house-key.secret is not configured");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        // Derivata dalla chiave stessa: non dipende da un numero da aggiornare a mano
+        this.version = hmac("house-key-version").substring(0, 8);
+    }
+
+    public String version() {
+        return version;
+    }
+
+    public String of(String houseId) {
+        return hmac(houseId);
+    }
+
+    private String hmac(String value) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return HexFormat.of().formatHex(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -12,4 +12,5 @@ public enum StatusAuth
     USER_ALREADY_LINKED,
     USERS_NOT_FOUND,
     USERS_FOUNDED,
+    SERVICE_BUSY,
 }
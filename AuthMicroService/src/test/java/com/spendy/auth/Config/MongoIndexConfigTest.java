@@ -0,0 +1,54 @@
+package com.spendy.auth.Config;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MongoIndexConfigTest {
+
+    // Mock del template: restituisce i gruppi calcolati dall'aggregazione
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Verifica che senza valori ripetuti il controllo lasci creare l'indice
+     */
+    @Test
+    void checkNoDuplicates_NoDuplicates_Passes() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("users"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+        assertDoesNotThrow(() -> MongoIndexConfig.checkNoDuplicates(mongoTemplate, "email"));
+    }
+
+    /**
+     * Verifica che con valori ripetuti l'avvio fallisca indicando campo e utenti da correggere
+     */
+    @Test
+    void checkNoDuplicates_Duplicates_FailsWithUserIds() {
+        Document group = new Document("_id", "mario@test.com").append("count", 2).append("ids", List.of("u1", "u2"));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("users"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(group), new Document()));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> MongoIndexConfig.checkNoDuplicates(mongoTemplate, "email"));
+
+        assertTrue(e.getMessage().contains("users.email"));
+        assertTrue(e.getMessage().contains("[u1, u2]"));
+        // Il messaggio indica gli _id, non i valori duplicati
+        assertFalse(e.getMessage().contains("mario@test.com"));
+    }
+}
@@ -135,6 +135,27 @@ class AuthControllerTest {
         assertEquals("Server error", response.getEntity());
     }
 
+    /**
+     * Verifica login con pool BCrypt saturo: deve restituire 503 SERVICE UNAVAILABLE con Retry-After
+     */
+    @Test
+    void testLoginServiceBusy() {
+        // Crea un utente di test
+        User user = new User();
+        user.setUsername("testuser");
+        user.setPassword("password");
+        // Simula il rifiuto per pool saturo
+        when(authService.login("testuser", "password")).thenReturn(new AuthResult(StatusAuth.SERVICE_BUSY, null));
+        when(authService.getRetryAfterSeconds()).thenReturn(2);
+
+        // Esegue il login tramite il controller
+        Response response = authController.login(user);
+
+        // Verifica che la risposta sia 503 e indichi quando riprovare
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        assertEquals("2", response.getHeaderString("Retry-After"));
+    }
+
     /**
      * Verifica registrazione con dati validi: deve restituire 200 OK e messaggio di successo
      */
@@ -265,4 +286,27 @@ class AuthControllerTest {
         assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
         assertEquals("No users found for the given house ID", response.getEntity());
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifica che la scrittura della casa restituisca 200 OK quando l'utente esiste
+     */
+    @Test
+    void testSetHouseSuccess() {
+        when(authService.setHouse("testuser", "house")).thenReturn(new AuthResult(StatusAuth.SUCCESS, null));
+
+        Response response = authController.setHouse(Map.of("username", "testuser", "houseId", "house"));
+
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Verifica che la scrittura della casa senza username restituisca 400 senza chiamare il servizio
+     */
+    @Test
+    void testSetHouseMissingUsername() {
+        Response response = authController.setHouse(Map.of("houseId", "house"));
+
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        verifyNoInteractions(authService);
+    }
+}
@@ -0,0 +1,85 @@
+package com.spendy.auth.Repository;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.spendy.auth.Config.MongoIndexConfig;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Richiede un'istanza Mongo raggiungibile: viene eseguito solo se MONGODB_URI è impostata
+@EnabledIfEnvironmentVariable(named = "MONGODB_URI", matches = ".+")
+class IUserRepositoryExplainTest {
+
+    private static final String DATABASE = "spendy_auth_explain_test";
+
+    private static MongoClient client;
+    private static MongoTemplate template;
+    private static MongoCollection<Document> users;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create(System.getenv("MONGODB_URI"));
+        template = new MongoTemplate(client, DATABASE);
+        template.getDb().drop();
+        MongoIndexConfig.createUserIndexes(template);
+
+        users = template.getDb().getCollection("users");
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            docs.add(new Document("username", "user" + i).append("email", "user" + i + "@test.com"));
+        }
+        users.insertMany(docs);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.getDatabase(DATABASE).drop();
+        client.close();
+    }
+
+    /**
+     * Verifica che il login per username o email usi gli indici unique parziali su entrambi i rami del $or
+     */
+    @Test
+    void findByUsernameOrEmail_UsesBothIndexes() {
+        Document filter = Document.parse(IUserRepository.USERNAME_OR_EMAIL.replace("?0", "'user7@test.com'"));
+
+        Document explain = users.find(filter).explain();
+
+        String plan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertFalse(plan.contains("COLLSCAN"), "piano con scansione completa: " + plan);
+        assertTrue(plan.contains("\"indexName\": \"username\""), "ramo username senza indice: " + plan);
+        assertTrue(plan.contains("\"indexName\": \"email\""), "ramo email senza indice: " + plan);
+    }
+
+    /**
+     * Verifica che con utenti duplicati già salvati l'avvio fallisca prima di creare l'indice
+     */
+    @Test
+    void createUserIndexes_ExistingDuplicates_Fails() {
+        MongoTemplate other = new MongoTemplate(client, DATABASE + "_duplicates");
+        other.getDb().drop();
+        MongoCollection<Document> duplicated = other.getDb().getCollection("users");
+        duplicated.insertMany(List.of(
+                new Document("username", "mario").append("email", "mario@test.com"),
+                new Document("username", "mario").append("email", "mario2@test.com")));
+        try {
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                    () -> MongoIndexConfig.createUserIndexes(other));
+
+            assertTrue(e.getMessage().contains("users.username"));
+        } finally {
+            other.getDb().drop();
+        }
+    }
+}
@@ -149,11 +149,11 @@ class IUserRepositoryTest {
         String username = "testuser";
         String houseCode = "NEWHOUSE456";
 
-        // Quando si setta il campo houseUser
-        userRepository.setHouseUser(username, houseCode);
+        // Quando si setta il campo houseUser insieme alla sua chiave
+        userRepository.setHouseUser(username, houseCode, "key", "v1");
 
         // Allora il metodo deve essere chiamato una volta
-        verify(userRepository, times(1)).setHouseUser(username, houseCode);
+        verify(userRepository, times(1)).setHouseUser(username, houseCode, "key", "v1");
     }
 
     // Verifica che vengano trovati tutti gli utenti associati a uno specifico houseId
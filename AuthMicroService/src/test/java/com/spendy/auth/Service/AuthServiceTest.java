@@ -3,20 +3,25 @@ package com.spendy.auth.Service;
 import com.spendy.auth.Data.User;
 import com.spendy.auth.Repository.IUserRepository;
 import com.spendy.auth.Utility.AuthResult;
+import com.spendy.auth.Utility.HouseKey;
 import com.spendy.auth.Utility.StatusAuth;
 import com.spendy.auth.Utility.UserResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mindrot.jbcrypt.BCrypt;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
-import org.mockito.Mockito;
-import static org.mockito.Answers.RETURNS_DEEP_STUBS;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -29,9 +34,17 @@ class AuthServiceTest {
     @Mock
     private IUserRepository userRepository;
 
-    // Mock del WebClient per chiamate HTTP
-    @Mock(answer = RETURNS_DEEP_STUBS)
-    private WebClient webClient;
+    // Mock dell'emissione dei token
+    @Mock
+    private TokenIssuer tokenIssuer;
+
+    // Chiave HMAC reale, per confrontare i valori salvati
+    @Spy
+    private HouseKey houseKey = new HouseKey("test-secret");
+
+    // Pool BCrypt reale con costo minimo, per tenere veloci i test
+    @Spy
+    private PasswordHasher passwordHasher = new PasswordHasher(4, 1, 8, 1, new SimpleMeterRegistry());
 
     // Inietta i mock nel service da testare
     @InjectMocks
@@ -42,8 +55,8 @@ class AuthServiceTest {
      */
     @Test
     void register_UserAlreadyExists_ReturnsUserAlreadyExists() {
-        // Simula utente già esistente
-        when(userRepository.findByUsername("user")).thenReturn(new User());
+        // Simula la violazione dell'indice unique su username o email
+        when(userRepository.insert(any(User.class))).thenThrow(new DuplicateKeyException("E11000 duplicate key"));
 
         // Esegue la registrazione
         AuthResult result = authService.register("user", "nome", "pass", "cognome", "email@test.com");
@@ -57,11 +70,8 @@ class AuthServiceTest {
      */
     @Test
     void register_NewUser_ReturnsSuccess() {
-        // Simula utente non esistente
-        when(userRepository.findByUsername("user")).thenReturn(null);
-        // Simula risposta del WebClient con token
-        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Map.class).block())
-                .thenReturn(Map.of("token", "testtoken"));
+        // Simula il token emesso
+        when(tokenIssuer.issue("user")).thenReturn("testtoken");
 
         // Esegue la registrazione
         AuthResult result = authService.register("user", "nome", "pass", "cognome", "email@test.com");
@@ -69,8 +79,9 @@ class AuthServiceTest {
         // Verifica che lo stato sia SUCCESS e il token sia corretto
         assertEquals(StatusAuth.SUCCESS, result.getStatusAuth());
         assertEquals("testtoken", result.getToken());
-        // Verifica che il salvataggio sia stato chiamato una volta
-        verify(userRepository, times(1)).save(any(User.class));
+        // Verifica che l'inserimento sia stato chiamato una volta, senza ricerche preventive
+        verify(userRepository, times(1)).insert(any(User.class));
+        verify(userRepository, never()).findByUsername(anyString());
     }
 
     /**
@@ -79,8 +90,7 @@ class AuthServiceTest {
     @Test
     void login_UserNotFound_ReturnsUserNotFound() {
         // Simula utente non trovato per username ed email
-        when(userRepository.findByUsername("user")).thenReturn(null);
-        when(userRepository.findByEmail("user")).thenReturn(null);
+        when(userRepository.findByUsernameOrEmail("user")).thenReturn(List.of());
 
         // Esegue il login
         AuthResult result = authService.login("user", "pass");
@@ -97,7 +107,7 @@ class AuthServiceTest {
         // Crea utente con password hashata
         User user = new User("user", "nome", BCrypt.hashpw("rightpass", BCrypt.gensalt()), "cognome", "email@test.com");
         // Simula utente trovato
-        when(userRepository.findByUsername("user")).thenReturn(user);
+        when(userRepository.findByUsernameOrEmail("user")).thenReturn(List.of(user));
 
         // Esegue il login con password errata
         AuthResult result = authService.login("user", "wrongpass");
@@ -116,10 +126,9 @@ class AuthServiceTest {
         String hashed = BCrypt.hashpw(password, BCrypt.gensalt());
         User user = new User("user", "nome", hashed, "cognome", "email@test.com");
 
-        // Simula utente trovato e risposta del WebClient
-        when(userRepository.findByUsername("user")).thenReturn(user);
-        when(webClient.post().uri(anyString()).bodyValue(any()).retrieve().bodyToMono(Map.class).block())
-                .thenReturn(Map.of("token", "testtoken"));
+        // Simula utente trovato e token emesso
+        when(userRepository.findByUsernameOrEmail("user")).thenReturn(List.of(user));
+        when(tokenIssuer.issue("user")).thenReturn("testtoken");
 
         // Esegue il login
         AuthResult result = authService.login("user", password);
@@ -141,19 +150,14 @@ class AuthServiceTest {
 
         // Simula valore di houseUser e lista utenti
         when(user.getHouseUser()).thenReturn(hashedHouseId);
-        when(userRepository.findAll()).thenReturn(List.of(user));
+        when(userRepository.findByHouseUserWithoutHouseKey(eq(houseKey.version()), any(Pageable.class))).thenReturn(List.of(user));
 
-        // Mock statico di BCrypt.checkpw per forzare true
-        try (var mocked = Mockito.mockStatic(BCrypt.class)) {
-            mocked.when(() -> BCrypt.checkpw(eq(houseId), anyString())).thenReturn(true);
+        // Esegue la ricerca
+        UserResult result = authService.getUserByHouseId(houseId);
 
-            // Esegue la ricerca
-            UserResult result = authService.getUserByHouseId(houseId);
-
-            // Verifica che lo stato sia USERS_FOUNDED e la lista non sia nulla
-            assertEquals(StatusAuth.USERS_FOUNDED, result.getStatusAuth());
-            assertNotNull(result.getUsers());
-        }
+        // Verifica che lo stato sia USERS_FOUNDED e la lista non sia nulla
+        assertEquals(StatusAuth.USERS_FOUNDED, result.getStatusAuth());
+        assertNotNull(result.getUsers());
     }
 
     /**
@@ -168,20 +172,195 @@ class AuthServiceTest {
 
         // Simula valore di houseUser e lista utenti
         when(user.getHouseUser()).thenReturn(hashedHouseId);
-        when(userRepository.findAll()).thenReturn(List.of(user));
+        when(userRepository.findByHouseUserWithoutHouseKey(eq(houseKey.version()), any(Pageable.class))).thenReturn(List.of(user));
+
+        // Esegue la ricerca dei coinquilini
+        List<User> result = authService.getCoinquilinibyHouseId(houseId);
+
+        // Verifica che la lista sia corretta
+        assertNotNull(result);
+        assertEquals(1, result.size());
+        assertEquals(user, result.get(0));
+    }
+
+    /**
+     * Verifica che un utente non ancora migrato venga trovato con BCrypt e riceva la chiave della casa
+     */
+    @Test
+    void getUserByHouseId_UnkeyedUser_SavesHouseKey() {
+        String houseId = "house";
+        String hashedHouseId = BCrypt.hashpw(houseId, BCrypt.gensalt(4));
+        User user = new User("user", "nome", "pass", "cognome", "email@test.com");
+        user.setId_user("u1");
+        user.setHouseUser(hashedHouseId);
+
+        when(userRepository.findByHouseUserWithoutHouseKey(eq(houseKey.version()), any(Pageable.class))).thenReturn(List.of(user));
+
+        UserResult result = authService.getUserByHouseId(houseId);
+
+        // Utente restituito e chiave salvata insieme all'hash da cui deriva e alla versione del segreto
+        assertEquals(List.of(user), result.getUsers());
+        verify(userRepository).setHouseKey("u1", houseKey.of(houseId), hashedHouseId, houseKey.version());
+    }
+
+    /**
+     * Verifica che un utente già migrato venga trovato con la query indicizzata, senza BCrypt
+     */
+    @Test
+    void getUserByHouseId_KeyedUser_NoBcrypt() {
+        String houseId = "house";
+        User user = new User("user", "nome", "pass", "cognome", "email@test.com");
+        user.setHouseUser("$2a$04$hash");
+        user.setHouseKey(houseKey.of(houseId));
+        user.setHouseKeyOf("$2a$04$hash");
+        user.setHouseKeyVersion(houseKey.version());
 
-        // Mock statico di BCrypt.checkpw per forzare true
-        try (var mocked = Mockito.mockStatic(BCrypt.class)) {
-            mocked.when(() -> BCrypt.checkpw(eq(houseId), anyString())).thenReturn(true);
+        when(userRepository.findByHouseKey(houseKey.of(houseId), houseKey.version())).thenReturn(List.of(user));
 
-            // Esegue la ricerca dei coinquilini
-            List<User> result = authService.getCoinquilinibyHouseId(houseId);
+        UserResult result = authService.getUserByHouseId(houseId);
 
-            // Verifica che la lista sia corretta
-            assertNotNull(result);
-            assertEquals(1, result.size());
-            assertEquals(user, result.get(0));
-        }
+        assertEquals(List.of(user), result.getUsers());
+        verify(passwordHasher).checkAll(houseId, List.of());
+        verify(userRepository, never()).setHouseKey(any(), any(), any(), any());
     }
 
+    /**
+     * Verifica che una chiave calcolata con un segreto precedente non venga usata:
+     * l'utente passa da BCrypt e riceve la chiave della versione corrente
+     */
+    @Test
+    void getUserByHouseId_KeyOfPreviousSecret_RekeyedWithBcrypt() {
+        String houseId = "house";
+        String hashedHouseId = BCrypt.hashpw(houseId, BCrypt.gensalt(4));
+        HouseKey previous = new HouseKey("previous-secret");
+        User user = new User("user", "nome", "pass", "cognome", "email@test.com");
+        user.setId_user("u1");
+        user.setHouseUser(hashedHouseId);
+        user.setHouseKey(previous.of(houseId));
+        user.setHouseKeyOf(hashedHouseId);
+        user.setHouseKeyVersion(previous.version());
+
+        when(userRepository.findByHouseUserWithoutHouseKey(eq(houseKey.version()), any(Pageable.class))).thenReturn(List.of(user));
+
+        UserResult result = authService.getUserByHouseId(houseId);
+
+        assertEquals(List.of(user), result.getUsers());
+        verify(userRepository).setHouseKey("u1", houseKey.of(houseId), hashedHouseId, houseKey.version());
+    }
+
+    /**
+     * Verifica che con il pool BCrypt saturo la ricerca per casa restituisca SERVICE_BUSY
+     */
+    @Test
+    void getUserByHouseId_HasherRejects_ReturnsServiceBusy() {
+        User user = new User("user", "nome", "pass", "cognome", "email@test.com");
+        user.setHouseUser("$2a$04$hash");
+        when(userRepository.findByHouseUserWithoutHouseKey(eq(houseKey.version()), any(Pageable.class))).thenReturn(List.of(user));
+        doThrow(new java.util.concurrent.RejectedExecutionException()).when(passwordHasher).checkAll(eq("house"), anyList());
+
+        UserResult result = authService.getUserByHouseId("house");
+
+        assertEquals(StatusAuth.SERVICE_BUSY, result.getStatusAuth());
+        verify(userRepository, never()).setHouseKey(any(), any(), any(), any());
+    }
+
+    /**
+     * Verifica che la chiave di una casa precedente venga rimossa quando house_user è cambiato
+     */
+    @Test
+    void getUserByHouseId_StaleKey_ClearsHouseKey() {
+        String houseId = "house";
+        User user = new User("user", "nome", "pass", "cognome", "email@test.com");
+        user.setId_user("u1");
+        user.setHouseUser(BCrypt.hashpw("other-house", BCrypt.gensalt(4)));
+        user.setHouseKey(houseKey.of(houseId));
+        user.setHouseKeyOf("$2a$04$previous");
+        user.setHouseKeyVersion(houseKey.version());
+
+        when(userRepository.findByHouseKey(houseKey.of(houseId), houseKey.version())).thenReturn(List.of(user));
+
+        UserResult result = authService.getUserByHouseId(houseId);
+
+        assertTrue(result.getUsers().isEmpty());
+        verify(userRepository).setHouseKey("u1", null, null, null);
+    }
+
+    /**
+     * Verifica che la ricerca controlli con BCrypt al più fallbackLimit utenti senza chiave, partendo da quelli
+     * controllati meno di recente, e segni come controllati quelli che non corrispondono
+     */
+    @Test
+    void getUserByHouseId_UnkeyedUsers_BoundedAndMarkedChecked() {
+        User other = new User("other", "nome", "pass", "cognome", "other@test.com");
+        other.setId_user("u2");
+        other.setHouseUser(BCrypt.hashpw("other-house", BCrypt.gensalt(4)));
+        when(userRepository.findByHouseUserWithoutHouseKey(eq(houseKey.version()), any(Pageable.class))).thenReturn(List.of(other));
+
+        UserResult result = authService.getUserByHouseId("house");
+
+        assertTrue(result.getUsers().isEmpty());
+        verify(userRepository).findByHouseUserWithoutHouseKey(houseKey.version(),
+                PageRequest.of(0, 100, Sort.by(Sort.Direction.ASC, "houseKeyChecked")));
+        verify(userRepository).setHouseKeyChecked(eq(List.of("u2")), any(Date.class));
+    }
+
+    /**
+     * Verifica che scrivendo la casa vengano salvati insieme l'hash BCrypt e la chiave dello stesso codice
+     */
+    @Test
+    void setHouse_StoresHashAndHouseKey() {
+        // Valori calcolati prima dei matcher: houseKey è uno spy
+        String key = houseKey.of("house");
+        String version = houseKey.version();
+        when(userRepository.setHouseUser(eq("user"), anyString(), eq(key), eq(version))).thenReturn(1L);
+
+        AuthResult result = authService.setHouse("user", "house");
+
+        assertEquals(StatusAuth.SUCCESS, result.getStatusAuth());
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        verify(userRepository).setHouseUser(eq("user"), hash.capture(), eq(key), eq(version));
+        // Mai il codice in chiaro in house_user
+        assertNotEquals("house", hash.getValue());
+        assertTrue(BCrypt.checkpw("house", hash.getValue()));
+    }
+
+    /**
+     * Verifica che la scrittura della casa di un utente inesistente restituisca USER_NOT_FOUND
+     */
+    @Test
+    void setHouse_UnknownUser_ReturnsUserNotFound() {
+        when(userRepository.setHouseUser(eq("ghost"), anyString(), anyString(), anyString())).thenReturn(0L);
+
+        assertEquals(StatusAuth.USER_NOT_FOUND, authService.setHouse("ghost", "house").getStatusAuth());
+    }
+
+    /**
+     * Verifica che la registrazione con pool BCrypt saturo restituisca SERVICE_BUSY senza salvare l'utente
+     */
+    @Test
+    void register_HasherRejects_ReturnsServiceBusy() {
+        doThrow(new java.util.concurrent.RejectedExecutionException()).when(passwordHasher).hash("pass");
+
+        AuthResult result = authService.register("user", "nome", "pass", "cognome", "email@test.com");
+
+        assertEquals(StatusAuth.SERVICE_BUSY, result.getStatusAuth());
+        verify(userRepository, never()).insert(any(User.class));
+    }
+
+    /**
+     * Verifica che, se l'identificativo corrisponde allo username di un utente e all'email di un altro, vinca lo username
+     */
+    @Test
+    void login_UsernameAndEmailMatchDifferentUsers_PrefersUsername() {
+        String hashed = BCrypt.hashpw("pass", BCrypt.gensalt(4));
+        User byEmail = new User("other", "nome", "$2a$04$wrong", "cognome", "mario");
+        User byUsername = new User("mario", "nome", hashed, "cognome", "mario@test.com");
+
+        when(userRepository.findByUsernameOrEmail("mario")).thenReturn(List.of(byEmail, byUsername));
+        when(tokenIssuer.issue("mario")).thenReturn("testtoken");
+
+        AuthResult result = authService.login("mario", "pass");
+
+        assertEquals(StatusAuth.SUCCESS, result.getStatusAuth());
+    }
 }
@@ -0,0 +1,74 @@
+package com.spendy.auth.Service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PasswordHasher hasher = new PasswordHasher(4, 1, 8, 1, registry);
+
+    @AfterEach
+    void tearDown() {
+        hasher.shutdown();
+    }
+
+    /**
+     * Verifica che l'hash usi il costo configurato e sia compatibile con BCrypt
+     */
+    @Test
+    void hash_UsesConfiguredCost() {
+        String hashed = hasher.hash("password");
+
+        assertTrue(hashed.startsWith("$2a$04$"));
+        assertTrue(BCrypt.checkpw("password", hashed));
+    }
+
+    /**
+     * Verifica che la verifica accetti la password giusta e rifiuti quella sbagliata
+     */
+    @Test
+    void check_RightAndWrongPassword() {
+        String hashed = BCrypt.hashpw("password", BCrypt.gensalt(4));
+
+        assertTrue(hasher.check("password", hashed));
+        assertFalse(hasher.check("other", hashed));
+    }
+
+    /**
+     * Verifica che la verifica su più hash risponda per ciascuno, anche con più hash della coda del pool
+     */
+    @Test
+    void checkAll_MoreHashesThanQueue() {
+        String right = BCrypt.hashpw("password", BCrypt.gensalt(4));
+        String wrong = BCrypt.hashpw("other", BCrypt.gensalt(4));
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            hashes.add(i % 3 == 0 ? right : wrong);
+        }
+
+        boolean[] matches = hasher.checkAll("password", hashes);
+
+        for (int i = 0; i < hashes.size(); i++) {
+            assertEquals(i % 3 == 0, matches[i]);
+        }
+        assertEquals(0, registry.get("auth.bcrypt.rejected").counter().count());
+    }
+
+    /**
+     * Verifica che la durata delle operazioni venga registrata
+     */
+    @Test
+    void check_RecordsDuration() {
+        hasher.check("password", BCrypt.hashpw("password", BCrypt.gensalt(4)));
+
+        assertEquals(1, registry.get("auth.bcrypt.duration").tag("operation", "check").timer().count());
+    }
+}
@@ -0,0 +1,25 @@
+package com.spendyteam.expense.Config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ImportExecutorConfig {
+
+    // Executor dedicato agli import asincroni: pochi thread e coda limitata, oltre la quale i job vengono rifiutati
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor importJobExecutor(@Value("${expense.import.jobs.threads:2}") int threads,
+                                                @Value("${expense.import.jobs.queue-capacity:16}") int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "import-job-" + counter.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,58 @@
+package com.spendyteam.expense.Config;
+
+import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Data.ExpenseRollup;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+@Configuration
+public class MongoIndexConfig {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    public void createIndexes() {
+        createExpenseIndexes(mongoTemplate);
+
+        // Una riga per utente, categoria e mese; la lettura dei totali annuali scorre un solo intervallo di mesi
+        mongoTemplate.indexOps(ExpenseRollup.class).createIndex(new Index()
+                .on("username", Sort.Direction.ASC)
+                .on("category", Sort.Direction.ASC)
+                .on("month", Sort.Direction.ASC)
+                .named("username_category_month")
+                .unique());
+    }
+
+    public static void createExpenseIndexes(MongoTemplate mongoTemplate) {
+        IndexOperations expenses = mongoTemplate.indexOps(Expense.class);
+
+        // Le query per utente filtrano per intervallo di date o per segno dell'importo;
+        // _id in coda rende indicizzato anche l'ordinamento della paginazione a keyset
+        expenses.createIndex(new Index()
+                .on("username", Sort.Direction.ASC)
+                .on("startedDate", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .named("username_startedDate_id"));
+        expenses.createIndex(new Index()
+                .on("username", Sort.Direction.ASC)
+                .on("amount", Sort.Direction.ASC)
+                .named("username_amount"));
+
+        // Una riga importata può esistere una sola volta per utente. Le spese inserite a mano
+        // o importate prima dell'introduzione dell'impronta non hanno il campo e restano fuori dall'indice.
+        expenses.createIndex(new Index()
+                .on("username", Sort.Direction.ASC)
+                .on("fingerprint", Sort.Direction.ASC)
+                .named("username_fingerprint")
+                .unique()
+                .partial(PartialIndexFilter.of(Criteria.where("fingerprint").exists(true))));
+    }
+}
@@ -1,12 +1,18 @@
 package com.spendyteam.expense.Controller;
 
 import com.spendyteam.expense.Service.ExpenseImportService;
+import com.spendyteam.expense.Utility.ExpenseFields;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Response;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 @RestController
@@ -18,14 +24,15 @@ public class ExpenseController {
 
 
     @PostMapping("/import")
-    public ResponseEntity<String> importCsv(@RequestParam("file") MultipartFile file, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+    @Produces("application/json")
+    public ResponseEntity<?> importCsv(@RequestParam("file") MultipartFile file, @RequestHeader(value = "Authorization", required = false) String authHeader) {
         try {
             String token = authHeader.substring(7);
             Response res = expenseService.importExpensesFromCsv(file,token);
             if(res.getStatus()==200){
-                return ResponseEntity.ok(res.getEntity().toString());
+                return ResponseEntity.ok(res.getEntity());
             } else {
-                return ResponseEntity.status(res.getStatus()).body(res.getEntity().toString());
+                return ResponseEntity.status(res.getStatus()).body(res.getEntity());
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -33,12 +40,143 @@ public class ExpenseController {
         }
     }
 
+    // Import in streaming: il CSV arriva come corpo della richiesta e non è soggetto ai limiti del multipart
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/octet-stream"})
+    @Produces("application/json")
+    public ResponseEntity<?> importCsvStream(InputStream body, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.importExpensesFromStream(body, token);
+            if(res.getStatus()==200){
+                return ResponseEntity.ok(res.getEntity());
+            } else {
+                return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.badRequest().body("Failed to import CSV: " + e.getMessage());
+        }
+    }
+
+    // Import asincrono: risponde subito con l'id del job, l'avanzamento si legge da /import/jobs/{jobId}
+    @PostMapping("/import/async")
+    @Produces("application/json")
+    public ResponseEntity<?> importCsvAsync(@RequestParam("file") MultipartFile file, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try (InputStream in = file.getInputStream()) {
+            String token = authHeader.substring(7);
+            Response res = expenseService.submitImportJob(in, token);
+            return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to import CSV: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/import/async", consumes = {"text/csv", "application/octet-stream"})
+    @Produces("application/json")
+    public ResponseEntity<?> importCsvStreamAsync(InputStream body, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.submitImportJob(body, token);
+            return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to import CSV: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/import/jobs/{jobId}")
+    @Produces("application/json")
+    public ResponseEntity<?> getImportJob(@PathVariable("jobId") String jobId, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.getImportJob(jobId, token);
+            return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(
+                java.util.Collections.singletonMap("error", "Failed to retrieve import job: " + e.getMessage())
+            );
+        }
+    }
+
+    @DeleteMapping("/import/jobs/{jobId}")
+    @Produces("application/json")
+    public ResponseEntity<?> cancelImportJob(@PathVariable("jobId") String jobId, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.cancelImportJob(jobId, token);
+            return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(
+                java.util.Collections.singletonMap("error", "Failed to cancel import job: " + e.getMessage())
+            );
+        }
+    }
+
+    @GetMapping("/rules")
+    @Produces("application/json")
+    public ResponseEntity<?> getRules(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.getRules(token);
+            return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(
+                java.util.Collections.singletonMap("error", "Failed to retrieve rules: " + e.getMessage())
+            );
+        }
+    }
+
+    @PostMapping("/rules")
+    @Consumes("application/json")
+    @Produces("application/json")
+    public ResponseEntity<?> addRule(@RequestBody Map<String, String> body, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.addRule(body, token);
+            return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(
+                java.util.Collections.singletonMap("error", "Failed to add rule: " + e.getMessage())
+            );
+        }
+    }
+
+    @DeleteMapping("/rules/{ruleId}")
+    @Produces("application/json")
+    public ResponseEntity<?> deleteRule(@PathVariable("ruleId") String ruleId, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.deleteRule(ruleId, token);
+            return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(
+                java.util.Collections.singletonMap("error", "Failed to delete rule: " + e.getMessage())
+            );
+        }
+    }
+
+    @PostMapping("/reclassify")
+    @Produces("application/json")
+    public ResponseEntity<?> reclassifyExpenses(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.reclassifyExpenses(token);
+            return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(
+                java.util.Collections.singletonMap("error", "Failed to reclassify expenses: " + e.getMessage())
+            );
+        }
+    }
+
     @GetMapping("/getExpenses")
     @Produces("application/json")
-    public ResponseEntity<?> getExpenses(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+    public ResponseEntity<?> getExpenses(@RequestParam(value = "cursor", required = false) String cursor,
+                                         @RequestParam(value = "limit", required = false) Integer limit,
+                                         @RequestParam(value = "fields", required = false) String fields,
+                                         @RequestHeader(value = "Authorization", required = false) String authHeader) {
         try {
             String token = authHeader.substring(7);
-            Response res = expenseService.getExpenses(token);
+            Response res = expenseService.getExpenses(token, cursor, limit, ExpenseFields.parse(fields));
             if(res.getStatus() == 200){
                 return ResponseEntity.ok().body(res.getEntity());
             } else {
@@ -51,16 +189,41 @@ public class ExpenseController {
         }
     }
 
+    // Una spesa JSON per riga, scritta man mano che arriva da Mongo. Il tipo di ritorno deve essere
+    // ResponseEntity<StreamingResponseBody> perché Spring scriva il corpo in modo asincrono
+    @GetMapping(value = "/getExpenses/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamExpenses(@RequestParam(value = "fields", required = false) String fields,
+                                                                @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.streamExpenses(token, ExpenseFields.parse(fields));
+            if (res.getStatus() == 200) {
+                return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson"))
+                        .body((StreamingResponseBody) res.getEntity());
+            } else {
+                return ResponseEntity.status(res.getStatus()).contentType(MediaType.TEXT_PLAIN).body(text(res.getEntity()));
+            }
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(text("Failed to stream expenses: " + e.getMessage()));
+        }
+    }
+
+    private static StreamingResponseBody text(Object message) {
+        return out -> out.write(String.valueOf(message).getBytes(StandardCharsets.UTF_8));
+    }
+
     @PostMapping("/getExpenseByDate")
     @Consumes("application/json")
     @Produces("application/json")
-    public ResponseEntity<?> getExpenseByDate(@RequestBody Map<String, String> body, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+    public ResponseEntity<?> getExpenseByDate(@RequestBody Map<String, String> body,
+                                              @RequestParam(value = "fields", required = false) String fields,
+                                              @RequestHeader(value = "Authorization", required = false) String authHeader) {
         try {
             String token = authHeader.substring(7);
             String startedDate = body.get("startedDate");
             String completedDate = body.get("completedDate");
 
-            Response res = expenseService.getExpenseByDate(startedDate, completedDate,token);
+            Response res = expenseService.getExpenseByDate(startedDate, completedDate, token, ExpenseFields.parse(fields));
             if(res.getStatus() == 200){
                 return ResponseEntity.ok().body(res.getEntity());
             } else {
@@ -73,15 +236,22 @@ public class ExpenseController {
         }
     }
 
+    // Body {"month", "year"} per un mese, oppure {"months": "2024-01,2024-02"} per più mesi in una richiesta
     @PostMapping("/getExpenseByMonth")
     @Consumes("application/json")
     @Produces("application/json")
-    public ResponseEntity<?> getExpenseByMonth_Year(@RequestBody Map<String, String> body, @RequestHeader(value = "Authorization", required = false) String authHeader) {
+    public ResponseEntity<?> getExpenseByMonth_Year(@RequestBody Map<String, String> body,
+                                                    @RequestParam(value = "fields", required = false) String fields,
+                                                    @RequestHeader(value = "Authorization", required = false) String authHeader) {
         try {
             String token = authHeader.substring(7);
+            String months = body.get("months");
             String month = body.get("month");
             String year = body.get("year");
-            Response res = expenseService.getExpenseByMonth_Year(month, year, token);
+            ExpenseFields projection = ExpenseFields.parse(fields);
+            Response res = months != null
+                    ? expenseService.getExpenseByMonths(months, token, projection)
+                    : expenseService.getExpenseByMonth_Year(month, year, token, projection);
             if(res.getStatus() == 200){
                 return ResponseEntity.ok().body(res.getEntity());
             } else {
@@ -114,6 +284,37 @@ public class ExpenseController {
         }
     }
 
+    // Totali lato server per le dashboard: groupBy = day, week, month o category; date nel formato yyyy-MM-dd
+    @GetMapping("/aggregate")
+    @Produces("application/json")
+    public ResponseEntity<?> aggregateExpenses(@RequestParam("groupBy") String groupBy, @RequestParam("from") String from,
+                                               @RequestParam("to") String to,
+                                               @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.aggregateExpenses(groupBy, from, to, token);
+            return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(
+                java.util.Collections.singletonMap("error", "Failed to aggregate expenses: " + e.getMessage())
+            );
+        }
+    }
+
+    @PostMapping("/rollups/rebuild")
+    @Produces("application/json")
+    public ResponseEntity<?> rebuildRollups(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            String token = authHeader.substring(7);
+            Response res = expenseService.rebuildRollups(token);
+            return ResponseEntity.status(res.getStatus()).body(res.getEntity());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(
+                java.util.Collections.singletonMap("error", "Failed to rebuild rollups: " + e.getMessage())
+            );
+        }
+    }
+
     @DeleteMapping("/deleteExpense")
     public ResponseEntity<String> deleteExpense(@RequestBody Map<String, String> body) {
         try {
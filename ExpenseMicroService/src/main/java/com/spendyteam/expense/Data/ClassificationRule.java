@@ -0,0 +1,77 @@
+package com.spendyteam.expense.Data;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+// Regola di classificazione: se la descrizione contiene la parola chiave, la spesa riceve la categoria.
+// Le regole senza username valgono per tutti gli utenti.
+@Document(collection = "classification_rules")
+public class ClassificationRule {
+
+    @Id
+    private String id;
+
+    @Field("username")
+    private String username;
+
+    @Field("keyword")
+    private String keyword;
+
+    @Field("category")
+    private String category;
+
+    // A parità di parola chiave trovata vince la regola con priorità più bassa
+    @Field("priority")
+    private int priority;
+
+    @Field("createdAt")
+    private LocalDateTime createdAt;
+
+    // Getters & Setters
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getKeyword() {
+        return keyword;
+    }
+
+    public void setKeyword(String keyword) {
+        this.keyword = keyword;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
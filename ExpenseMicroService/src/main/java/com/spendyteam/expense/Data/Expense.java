@@ -3,6 +3,7 @@ package com.spendyteam.expense.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -29,10 +30,11 @@ public class Expense {
     @Field("description")
     private String description;
 
-    @Field("amount")
+    // Salvati come Decimal128: Mongo può filtrarli per segno e sommarli senza conversioni
+    @Field(name = "amount", targetType = FieldType.DECIMAL128)
     private BigDecimal amount;
 
-    @Field("fee")
+    @Field(name = "fee", targetType = FieldType.DECIMAL128)
     private BigDecimal fee;
 
     @Field("currency")
@@ -47,6 +49,10 @@ public class Expense {
     @Field("username")
     private String username;
 
+    // Impronta del contenuto della riga importata, usata per scartare i duplicati nei re-import
+    @Field("fingerprint")
+    private String fingerprint;
+
     // Getters & Setters
     public String getId() {
         return id;
@@ -139,6 +145,14 @@ public class Expense {
         this.username = userId;
     }
 
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
     @Override
     public String toString() {
         return "Expense{" +
@@ -0,0 +1,74 @@
+package com.spendyteam.expense.Data;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+
+// Totali mensili precalcolati delle spese di un utente per categoria.
+// La categoria "*" contiene il totale del mese su tutte le categorie.
+@Document(collection = "expense_rollups")
+public class ExpenseRollup {
+
+    public static final String ALL_CATEGORIES = "*";
+
+    @Id
+    private String id;
+
+    @Field("username")
+    private String username;
+
+    // Mese nel formato yyyy-MM, calcolato dalla data di inizio della spesa
+    @Field("month")
+    private String month;
+
+    @Field("category")
+    private String category;
+
+    // Decimal128 e non stringa, così Mongo può aggiornarli con $inc, $min e $max
+    @Field(name = "sum", targetType = FieldType.DECIMAL128)
+    private BigDecimal sum;
+
+    @Field("count")
+    private long count;
+
+    @Field(name = "min", targetType = FieldType.DECIMAL128)
+    private BigDecimal min;
+
+    @Field(name = "max", targetType = FieldType.DECIMAL128)
+    private BigDecimal max;
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getMonth() {
+        return month;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public BigDecimal getSum() {
+        return sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,8 @@
+package com.spendyteam.expense.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Proiezione con i soli campi mostrati nelle liste della UI
+public record ExpenseSummary(String id, LocalDateTime startedDate, BigDecimal amount, String category, String description) {
+}
@@ -0,0 +1,25 @@
+package com.spendyteam.expense.Data;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+// Versione delle regole di un utente (id = username), incrementata a ogni modifica.
+// Le istanze del servizio la confrontano con quella dei matcher in cache per sapere quando ricompilarli.
+@Document(collection = "classification_rule_versions")
+public class RuleSetVersion {
+
+    @Id
+    private String id;
+
+    @Field("version")
+    private long version;
+
+    public String getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
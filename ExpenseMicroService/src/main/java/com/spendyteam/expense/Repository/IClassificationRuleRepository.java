@@ -0,0 +1,17 @@
+package com.spendyteam.expense.Repository;
+
+import com.spendyteam.expense.Data.ClassificationRule;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface IClassificationRuleRepository extends MongoRepository<ClassificationRule, String> {
+
+    List<ClassificationRule> findByUsername(String username, Sort sort);
+
+    List<ClassificationRule> findByUsernameIsNull(Sort sort);
+
+    boolean existsByUsernameIsNull();
+
+}
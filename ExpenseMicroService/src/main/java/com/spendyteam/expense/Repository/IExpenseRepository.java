@@ -1,6 +1,8 @@
 package com.spendyteam.expense.Repository;
 
 import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Data.ExpenseSummary;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 
@@ -12,8 +14,32 @@ import java.util.Date;
 
 public interface IExpenseRepository extends MongoRepository<Expense, String> {
 
+    // Le uscite sono gli importi negativi: Decimal128, oppure stringhe con il segno meno
+    // (anche con spazi iniziali) finché ExpenseAmountMigration non le ha convertite; a conversione finita il secondo ramo è vuoto
+    String NEGATIVE_AMOUNT = "$or: [ { 'amount': { $lt: 0 } }, { 'amount': { $type: 'string', $regex: '^\\\\s*-' } } ]";
+
+    String EXPENSES_OF_USER = "{ 'username': ?0, " + NEGATIVE_AMOUNT + " }";
+
+    String EXPENSES_OF_USER_IN_RANGE = "{ 'username': ?0, "
+            + "'startedDate': { $gte: ?1, $lt: ?2 }, "
+            + "'completedDate': { $gt: ?1, $lte: ?2 }, "
+            + NEGATIVE_AMOUNT + " }";
+
+    String SUMMARY_FIELDS = "{ 'startedDate': 1, 'amount': 1, 'category': 1, 'description': 1 }";
+
     boolean existsByStartedDateAndCompletedDate(LocalDateTime startedDate, LocalDateTime completedDate);
 
     boolean existsByDescriptionAndAmount(String description, BigDecimal amount);
 
+    @Query(EXPENSES_OF_USER)
+    List<Expense> findExpensesByUsername(String username, Sort sort);
+
+    // Solo i campi delle liste della UI: il resto del documento non viene letto né serializzato
+    @Query(value = EXPENSES_OF_USER, fields = SUMMARY_FIELDS)
+    List<ExpenseSummary> findSummariesByUsername(String username, Sort sort);
+
+    // Spese iniziate e completate nell'intervallo [start, end]
+    @Query(EXPENSES_OF_USER_IN_RANGE)
+    List<Expense> findExpensesByUsernameAndDateRange(String username, LocalDateTime start, LocalDateTime end, Sort sort);
+
 }
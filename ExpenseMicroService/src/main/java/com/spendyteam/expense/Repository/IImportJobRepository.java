@@ -0,0 +1,12 @@
+package com.spendyteam.expense.Repository;
+
+import com.spendyteam.expense.Data.ImportJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface IImportJobRepository extends MongoRepository<ImportJob, String> {
+
+    List<ImportJob> findByStatusIn(List<String> statuses);
+
+}
@@ -0,0 +1,8 @@
+package com.spendyteam.expense.Repository;
+
+import com.spendyteam.expense.Data.RuleSetVersion;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface IRuleSetVersionRepository extends MongoRepository<RuleSetVersion, String> {
+
+}
@@ -0,0 +1,281 @@
+package com.spendyteam.expense.Service;
+
+import com.spendyteam.expense.Data.ClassificationRule;
+import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Data.RuleSetVersion;
+import com.spendyteam.expense.Repository.IClassificationRuleRepository;
+import com.spendyteam.expense.Repository.IRuleSetVersionRepository;
+import com.spendyteam.expense.Utility.ExpenseClassifier;
+import com.spendyteam.expense.Utility.KeywordMatcher;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Regole di classificazione salvate in Mongo, globali e per utente. Ogni insieme di regole viene
+ * compilato in un KeywordMatcher immutabile e tenuto in cache (LRU per gli utenti), così la
+ * classificazione delle righe non fa accessi a Mongo. Quando le regole cambiano il matcher
+ * viene ricompilato e sostituito per intero. Le regole globali si modificano direttamente
+ * nella collection: il controllo periodico le rilegge e ricompila il matcher se sono cambiate.
+ */
+@Service
+public class ClassificationRuleService {
+
+    private static final Sort RULE_ORDER = Sort.by("priority", "id");
+
+    @Autowired
+    private IClassificationRuleRepository ruleRepository;
+
+    @Autowired
+    private IRuleSetVersionRepository versionRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ExpenseRollupService rollupService;
+
+    @Autowired
+    private ExpenseCache expenseCache;
+
+    @Value("${expense.rules.cache-size:1000}")
+    private int cacheSize;
+
+    @Value("${expense.rules.reclassify-batch-size:1000}")
+    private int reclassifyBatchSize;
+
+    // Utente a cui assegnare le voci personali del vecchio dizionario; vuoto = vengono scartate
+    @Value("${expense.rules.seed-owner:}")
+    private String seedOwner;
+
+    private record CompiledRules(KeywordMatcher<String> matcher, List<ClassificationRule> rules, long version) {
+    }
+
+    private volatile CompiledRules global;
+
+    // Matcher per utente, rimossi in ordine di ultimo utilizzo oltre cacheSize
+    private Map<String, CompiledRules> userRules;
+
+    @PostConstruct
+    public void init() {
+        userRules = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledRules> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        // Al primo avvio le regole globali partono dal dizionario predefinito
+        if (!ruleRepository.existsByUsernameIsNull()) {
+            seedDefaultRules();
+        }
+        movePersonalRules();
+        global = compileGlobal();
+    }
+
+    // Matcher da usare per le spese di un utente: prima le sue regole, poi quelle globali
+    public KeywordMatcher<String> matcherFor(String username) {
+        CompiledRules current = global;
+        CompiledRules cached = userRules.get(username);
+        if (cached != null) {
+            return cached.matcher();
+        }
+        long version = versionOf(username);
+        List<ClassificationRule> rules = ruleRepository.findByUsername(username, RULE_ORDER);
+        // Senza regole proprie l'utente condivide il matcher globale
+        KeywordMatcher<String> matcher = rules.isEmpty() ? current.matcher() : compile(rules, current.rules());
+        CompiledRules compiled = new CompiledRules(matcher, rules, version);
+        userRules.put(username, compiled);
+        return compiled.matcher();
+    }
+
+    public String classify(String description, String username) {
+        return ExpenseClassifier.classify(description, matcherFor(username));
+    }
+
+    public List<ClassificationRule> getRules(String username) {
+        List<ClassificationRule> rules = new ArrayList<>(ruleRepository.findByUsername(username, RULE_ORDER));
+        rules.addAll(global.rules());
+        return rules;
+    }
+
+    public ClassificationRule addRule(String username, String keyword, String category, int priority) {
+        ClassificationRule rule = new ClassificationRule();
+        rule.setUsername(username);
+        rule.setKeyword(keyword);
+        rule.setCategory(category);
+        rule.setPriority(priority);
+        rule.setCreatedAt(LocalDateTime.now());
+        rule = ruleRepository.save(rule);
+        rulesChanged(username);
+        return rule;
+    }
+
+    // Un utente può eliminare solo le proprie regole
+    public boolean deleteRule(String ruleId, String username) {
+        Optional<ClassificationRule> rule = ruleRepository.findById(ruleId)
+                .filter(r -> username.equals(r.getUsername()));
+        if (rule.isEmpty()) {
+            return false;
+        }
+        ruleRepository.delete(rule.get());
+        rulesChanged(username);
+        return true;
+    }
+
+    // Riapplica le regole correnti a tutte le spese dell'utente, aggiornando solo quelle che cambiano categoria
+    public long reclassify(String username) {
+        KeywordMatcher<String> matcher = matcherFor(username);
+        Query query = new Query(Criteria.where("username").is(username));
+        query.fields().include("_id", "description", "category");
+
+        long updated = 0;
+        int pending = 0;
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Expense.class);
+        try (Stream<Expense> stream = mongoTemplate.stream(query, Expense.class)) {
+            Iterator<Expense> expenses = stream.iterator();
+            while (expenses.hasNext()) {
+                Expense expense = expenses.next();
+                String category = ExpenseClassifier.classify(expense.getDescription(), matcher);
+                if (category.equals(expense.getCategory())) {
+                    continue;
+                }
+                ops.updateOne(new Query(Criteria.where("_id").is(expense.getId())), Update.update("category", category));
+                if (++pending >= reclassifyBatchSize) {
+                    updated += ops.execute().getModifiedCount();
+                    ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Expense.class);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            updated += ops.execute().getModifiedCount();
+        }
+        // I totali per categoria non sono più validi
+        if (updated > 0) {
+            rollupService.rebuild(username);
+            expenseCache.invalidate(username);
+        }
+        return updated;
+    }
+
+    // Controllo periodico delle regole globali (poche decine, modificate direttamente nella collection)
+    // e delle versioni dei soli utenti in cache, per vedere le modifiche fatte da altre istanze del servizio
+    @Scheduled(fixedDelayString = "${expense.rules.refresh-interval-ms:30000}")
+    public void refresh() {
+        List<ClassificationRule> globalRules = ruleRepository.findByUsernameIsNull(RULE_ORDER);
+        if (!signature(globalRules).equals(signature(global.rules()))) {
+            global = compileGlobal(globalRules);
+            userRules.clear();
+            return;
+        }
+
+        List<String> cached;
+        synchronized (userRules) {
+            cached = new ArrayList<>(userRules.keySet());
+        }
+        if (cached.isEmpty()) {
+            return;
+        }
+        Map<String, Long> versions = new HashMap<>();
+        for (RuleSetVersion v : versionRepository.findAllById(cached)) {
+            versions.put(v.getId(), v.getVersion());
+        }
+        synchronized (userRules) {
+            userRules.entrySet().removeIf(e -> versions.getOrDefault(e.getKey(), 0L) != e.getValue().version());
+        }
+    }
+
+    private void rulesChanged(String username) {
+        mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(username)), new Update().inc("version", 1),
+                FindAndModifyOptions.options().upsert(true).returnNew(true), RuleSetVersion.class);
+        userRules.remove(username);
+    }
+
+    private CompiledRules compileGlobal() {
+        return compileGlobal(ruleRepository.findByUsernameIsNull(RULE_ORDER));
+    }
+
+    private CompiledRules compileGlobal(List<ClassificationRule> rules) {
+        return new CompiledRules(compile(List.of(), rules), rules, 0);
+    }
+
+    // Contenuto delle regole rilevante per il matcher, per riconoscere inserimenti, modifiche e cancellazioni
+    private static List<String> signature(List<ClassificationRule> rules) {
+        List<String> signature = new ArrayList<>(rules.size());
+        for (ClassificationRule rule : rules) {
+            signature.add(rule.getId() + '\u0000' + rule.getKeyword() + '\u0000' + rule.getCategory() + '\u0000' + rule.getPriority());
+        }
+        return signature;
+    }
+
+    private long versionOf(String scope) {
+        return versionRepository.findById(scope).map(RuleSetVersion::getVersion).orElse(0L);
+    }
+
+    // Le regole dell'utente precedono quelle globali: a parità di parola chiave trovata vincono loro
+    private static KeywordMatcher<String> compile(List<ClassificationRule> userRules, List<ClassificationRule> globalRules) {
+        KeywordMatcher.Builder<String> builder = KeywordMatcher.builder();
+        for (ClassificationRule rule : userRules) {
+            builder.add(rule.getKeyword(), rule.getCategory());
+        }
+        for (ClassificationRule rule : globalRules) {
+            builder.add(rule.getKeyword(), rule.getCategory());
+        }
+        return builder.build();
+    }
+
+    private void seedDefaultRules() {
+        List<ClassificationRule> rules = toRules(ExpenseClassifier.defaultRules(), null);
+        if (seedOwner != null && !seedOwner.isBlank()) {
+            rules.addAll(toRules(ExpenseClassifier.personalRules(), seedOwner));
+        }
+        ruleRepository.saveAll(rules);
+    }
+
+    // I nomi di persone non devono classificare le spese di tutti: le voci personali seminate
+    // come globali da versioni precedenti passano al proprietario, o vengono rimosse se non è configurato
+    private void movePersonalRules() {
+        List<String> keywords = ExpenseClassifier.personalRules().stream()
+                .flatMap(entry -> entry.getValue().stream())
+                .toList();
+        Query query = new Query(Criteria.where("username").isNull().and("keyword").in(keywords));
+        if (seedOwner != null && !seedOwner.isBlank()) {
+            if (mongoTemplate.updateMulti(query, Update.update("username", seedOwner), ClassificationRule.class)
+                    .getModifiedCount() > 0) {
+                rulesChanged(seedOwner);
+            }
+        } else {
+            mongoTemplate.remove(query, ClassificationRule.class);
+        }
+    }
+
+    private static List<ClassificationRule> toRules(List<Map.Entry<String, List<String>>> dictionary, String username) {
+        List<ClassificationRule> rules = new ArrayList<>();
+        int priority = 0;
+        for (Map.Entry<String, List<String>> entry : dictionary) {
+            for (String keyword : entry.getValue()) {
+                ClassificationRule rule = new ClassificationRule();
+                rule.setUsername(username);
+                rule.setKeyword(keyword);
+                rule.setCategory(entry.getKey());
+                rule.setPriority(priority++);
+                rule.setCreatedAt(LocalDateTime.now());
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,224 @@
+package com.spendyteam.expense.Service;
+
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Utility.ExpenseFingerprint;
+import com.spendyteam.expense.Utility.ExpenseRowMapper;
+import com.spendyteam.expense.Utility.ExpenseStatus;
+import com.spendyteam.expense.Utility.ImportContext;
+import com.spendyteam.expense.Utility.ImportProgress;
+import com.spendyteam.expense.Utility.ImportSummary;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Import in streaming di un CSV in tre stage: il lettore divide il file in blocchi di righe grezze,
+ * un pool di worker li converte e classifica in parallelo, e lo scrittore li salva nell'ordine
+ * originale. La coda tra gli stage è limitata, così la memoria usata resta costante qualunque
+ * sia la dimensione del file.
+ */
+@Component
+public class CsvImportPipeline {
+
+    // Numero massimo di errori di riga riportati nel riepilogo
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private record ParsedChunk(List<Expense> expenses, List<String> errors) {
+    }
+
+    // Marcatore di fine stream messo in coda dal lettore
+    private static final Future<ParsedChunk> END_OF_STREAM = CompletableFuture.completedFuture(null);
+
+    @Autowired
+    private ExpenseBatchWriter batchWriter;
+
+    @Autowired
+    private ClassificationRuleService classificationRules;
+
+    @Value("${expense.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${expense.import.queue-capacity:4}")
+    private int queueCapacity;
+
+    @Value("${expense.import.workers:0}")
+    private int workers;
+
+    @Value("${expense.import.date-sniff-rows:50}")
+    private int dateSniffRows;
+
+    @Value("${expense.import.occurrence-window-days:7}")
+    private int occurrenceWindowDays;
+
+    // Lo scrittore passa quasi tutto il tempo in attesa di Mongo
+    private final ExecutorService writerExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Parsing e classificazione sono CPU-bound: un thread per core salvo diversa configurazione
+    private ExecutorService parserExecutor;
+
+    // Blocchi in volo tra lettore e scrittore: almeno due per worker, altrimenti la coda limita il parallelismo
+    private int inFlightChunks;
+
+    @PostConstruct
+    public void init() {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        inFlightChunks = Math.max(queueCapacity, threads * 2);
+        AtomicInteger counter = new AtomicInteger();
+        parserExecutor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "import-parser-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public ImportSummary run(InputStream in, ImportContext context) throws IOException, CsvValidationException, InterruptedException {
+        ImportSummary summary = new ImportSummary(ExpenseStatus.SUCCESS, "Expenses imported");
+        ImportProgress progress = context.getProgress();
+        progress.start();
+
+        BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String headerLine = br.readLine(); // read raw header line to detect separator
+        if (headerLine == null) {
+            return new ImportSummary(ExpenseStatus.INVALID_INPUT, "CSV file has no header.");
+        }
+
+        CSVParser parser = new CSVParserBuilder().withSeparator(detectSeparator(headerLine)).build();
+        // Le regole dell'utente vengono risolte una volta: i worker condividono lo stesso matcher immutabile
+        ExpenseRowMapper mapper = new ExpenseRowMapper(parser.parseLine(headerLine), context,
+                classificationRules.matcherFor(context.getUsername()));
+
+        // Le Future vengono accodate nell'ordine del file: lo scrittore le consuma nello stesso ordine
+        BlockingQueue<Future<ParsedChunk>> queue = new ArrayBlockingQueue<>(inFlightChunks);
+        // Le righe identiche si numerano nell'ordine del file, quindi nello scrittore
+        ExpenseFingerprint.Occurrences occurrences = new ExpenseFingerprint.Occurrences(Duration.ofDays(occurrenceWindowDays));
+        Future<?> writer = writerExecutor.submit(() -> {
+            Future<ParsedChunk> next;
+            while ((next = queue.take()) != END_OF_STREAM) {
+                ParsedChunk chunk = next.get();
+                chunk.expenses().forEach(occurrences::number);
+                ExpenseBatchWriter.BatchResult result = batchWriter.write(chunk.expenses());
+                summary.addBatch(result.inserted());
+                progress.rowsWritten(result.inserted());
+                progress.rowsDuplicate(result.duplicates());
+                chunk.errors().forEach(error -> summary.addError(error, MAX_REPORTED_ERRORS));
+            }
+            return null;
+        });
+
+        boolean completed = false;
+        try (CSVReader reader = new CSVReaderBuilder(br).withCSVParser(parser).build()) {
+            List<String[]> rows = new ArrayList<>(batchSize);
+            long firstRow = 2; // la riga 1 è l'header
+            long rowNumber = 1;
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                if (progress.isCancelled()) {
+                    throw new CancellationException("Import cancelled");
+                }
+                progress.rowParsed();
+                rowNumber++;
+                rows.add(line);
+                if (rows.size() >= batchSize) {
+                    if (firstRow == 2) {
+                        mapper.sniffDateFormat(rows, dateSniffRows);
+                    }
+                    enqueue(queue, submitChunk(mapper, rows, firstRow, progress), writer);
+                    rows = new ArrayList<>(batchSize);
+                    firstRow = rowNumber + 1;
+                }
+            }
+            if (!rows.isEmpty()) {
+                if (firstRow == 2) {
+                    mapper.sniffDateFormat(rows, dateSniffRows);
+                }
+                enqueue(queue, submitChunk(mapper, rows, firstRow, progress), writer);
+            }
+            enqueue(queue, END_OF_STREAM, writer);
+            awaitWriter(writer);
+            completed = true;
+        } finally {
+            if (!completed) {
+                writer.cancel(true);
+            }
+        }
+
+        summary.complete(context);
+        return summary;
+    }
+
+    // Converte un blocco di righe grezze su uno dei worker
+    private Future<ParsedChunk> submitChunk(ExpenseRowMapper mapper, List<String[]> rows, long firstRow, ImportProgress progress) {
+        return parserExecutor.submit(() -> {
+            List<Expense> expenses = new ArrayList<>(rows.size());
+            List<String> errors = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                try {
+                    expenses.add(mapper.map(rows.get(i)));
+                } catch (DateTimeException | NumberFormatException e) {
+                    // La riga non valida viene scartata senza interrompere l'import
+                    progress.rowRejected();
+                    errors.add("Row " + (firstRow + i) + ": " + e.getMessage());
+                }
+            }
+            return new ParsedChunk(expenses, errors);
+        });
+    }
+
+    // Inserisce un blocco in coda bloccando finché lo scrittore non libera spazio
+    private void enqueue(BlockingQueue<Future<ParsedChunk>> queue, Future<ParsedChunk> chunk, Future<?> writer) throws InterruptedException {
+        while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                awaitWriter(writer);
+                throw new IllegalStateException("CSV writer stopped before the end of the file");
+            }
+        }
+    }
+
+    private void awaitWriter(Future<?> writer) throws InterruptedException {
+        try {
+            writer.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("CSV writer failed", e.getCause());
+        }
+    }
+
+    // detect separator by counting occurrences and choose the one with the highest count
+    private static char detectSeparator(String headerLine) {
+        int countComma = headerLine.length() - headerLine.replace(",", "").length();
+        int countSemi = headerLine.length() - headerLine.replace(";", "").length();
+        int countTab = headerLine.length() - headerLine.replace("\t", "").length();
+        char separator = ',';
+        int max = Math.max(countComma, Math.max(countSemi, countTab));
+        if (max == countSemi) separator = ';';
+        else if (max == countTab) separator = '\t';
+        return separator;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writerExecutor.shutdownNow();
+        parserExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,62 @@
+package com.spendyteam.expense.Service;
+
+import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Utility.ExpenseAggregate;
+import com.spendyteam.expense.Utility.ExpenseGrouping;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.*;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Totali delle spese calcolati da Mongo con una pipeline $match/$group:
+ * al servizio arriva un documento per gruppo invece delle singole spese.
+ */
+@Service
+public class ExpenseAggregationService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Spese (importo negativo) iniziate e completate nell'intervallo, raggruppate secondo il criterio scelto
+    public List<ExpenseAggregate> aggregate(String username, LocalDateTime start, LocalDateTime end, ExpenseGrouping grouping) {
+        Criteria criteria = Criteria.where("username").is(username)
+                .and("startedDate").gte(start).lt(end)
+                .and("completedDate").gt(start).lte(end)
+                .andOperator(ExpenseQueryService.negativeAmount());
+
+        // Le date sono salvate in UTC a partire dall'ora locale del servizio: i gruppi usano lo stesso fuso
+        AggregationExpression key = grouping.isByDate()
+                ? DateOperators.dateOf("startedDate")
+                        .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId()))
+                        .toString(grouping.getDateFormat())
+                : ConditionalOperators.ifNull("category").then("Non classificato");
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.project()
+                        .and(key).as("key")
+                        .and(ExpenseQueryService.decimalAmount()).as("amount"),
+                Aggregation.group("key").sum("amount").as("total").count().as("count"),
+                Aggregation.sort(Sort.Direction.ASC, "_id"));
+
+        List<ExpenseAggregate> result = new ArrayList<>();
+        for (Document doc : mongoTemplate.aggregate(aggregation, Expense.class, Document.class)) {
+            Decimal128 total = doc.get("total", Decimal128.class);
+            result.add(new ExpenseAggregate(doc.getString("_id"),
+                    total != null ? total.bigDecimalValue() : BigDecimal.ZERO,
+                    doc.get("count", Number.class).longValue()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package com.spendyteam.expense.Service;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Converte in Decimal128 gli importi salvati come stringhe prima che Expense dichiarasse
+ * il tipo di destinazione. Gira in background all'avvio, a blocchi ordinati per _id,
+ * mentre il servizio risponde normalmente; i documenti già convertiti non vengono più letti.
+ * Finché non ha finito le query accettano entrambe le rappresentazioni (IExpenseRepository.NEGATIVE_AMOUNT).
+ * Al termine i totali mensili vengono ricostruiti, le cache svuotate e salvato un marcatore.
+ */
+@Service
+public class ExpenseAmountMigration {
+
+    private static final String MIGRATIONS = "expense_migrations";
+    private static final String ID = "amount-decimal128";
+
+    // Tipo BSON string
+    private static final int STRING = 2;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ExpenseRollupService rollupService;
+
+    @Autowired
+    private ExpenseCache expenseCache;
+
+    @Value("${expense.migration.batch-size:1000}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (mongoTemplate.exists(new Query(Criteria.where("_id").is(ID)), MIGRATIONS)) {
+            return;
+        }
+        Thread.ofVirtual().name("amount-migration").start(this::complete);
+    }
+
+    // I totali e le cache calcolati durante la conversione vengono rifatti sugli importi definitivi
+    public void complete() {
+        migrate();
+        rollupService.rebuildAll();
+        expenseCache.invalidateAll();
+        mongoTemplate.save(new Document("_id", ID), MIGRATIONS);
+    }
+
+    // Restituisce il numero di documenti convertiti
+    public long migrate() {
+        long converted = 0;
+        Object lastId = null;
+        while (true) {
+            Criteria criteria = new Criteria().orOperator(
+                    Criteria.where("amount").type(STRING),
+                    Criteria.where("fee").type(STRING));
+            if (lastId != null) {
+                criteria = new Criteria().andOperator(Criteria.where("_id").gt(lastId), criteria);
+            }
+            Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(batchSize);
+            query.fields().include("amount", "fee");
+            List<Document> batch = mongoTemplate.find(query, Document.class, "expenses");
+            if (batch.isEmpty()) {
+                return converted;
+            }
+
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "expenses");
+            int updates = 0;
+            for (Document doc : batch) {
+                Update update = new Update();
+                boolean changed = convert(doc, "amount", update) | convert(doc, "fee", update);
+                if (changed) {
+                    ops.updateOne(new Query(Criteria.where("_id").is(doc.get("_id"))), update);
+                    updates++;
+                }
+            }
+            if (updates > 0) {
+                ops.execute();
+                converted += updates;
+            }
+            // Gli importi non leggibili restano stringhe: il cursore su _id evita di rileggerli
+            lastId = batch.get(batch.size() - 1).get("_id");
+        }
+    }
+
+    private static boolean convert(Document doc, String field, Update update) {
+        if (!(doc.get(field) instanceof String value)) {
+            return false;
+        }
+        try {
+            update.set(field, new Decimal128(new BigDecimal(value.trim())));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.spendyteam.expense.Service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.spendyteam.expense.Data.Expense;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Scrive un blocco di spese con un'unica bulk insert non ordinata,
+ * invece di un round trip verso Mongo per ogni riga del CSV.
+ * Le righe già presenti per lo stesso utente vengono scartate con una sola query $in sulle impronte.
+ */
+@Component
+public class ExpenseBatchWriter {
+
+    // Codice Mongo di violazione di un indice unique
+    private static final int DUPLICATE_KEY = 11000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ExpenseRollupService rollupService;
+
+    @Autowired
+    private ExpenseCache expenseCache;
+
+    public record BatchResult(int inserted, int duplicates) {
+    }
+
+    public BatchResult write(List<Expense> batch) {
+        if (batch.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+
+        // Le righe identiche del file hanno già impronte numerate: qui coincidono solo quelle di un altro import
+        Map<String, Expense> byFingerprint = new LinkedHashMap<>();
+        for (Expense expense : batch) {
+            byFingerprint.putIfAbsent(expense.getFingerprint(), expense);
+        }
+
+        Query existing = new Query(Criteria.where("username").is(batch.get(0).getUsername())
+                .and("fingerprint").in(byFingerprint.keySet()));
+        existing.fields().include("fingerprint", "state", "completedDate");
+        BulkOperations settled = null;
+        for (Expense stored : mongoTemplate.find(existing, Expense.class)) {
+            Expense incoming = byFingerprint.remove(stored.getFingerprint());
+            // Lo stesso movimento riesportato dopo il completamento aggiorna quello salvato invece di duplicarlo
+            if (incoming != null && (!Objects.equals(incoming.getState(), stored.getState())
+                    || !Objects.equals(incoming.getCompletedDate(), stored.getCompletedDate()))) {
+                if (settled == null) {
+                    settled = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Expense.class);
+                }
+                settled.updateOne(new Query(Criteria.where("_id").is(stored.getId())), new Update()
+                        .set("state", incoming.getState())
+                        .set("completedDate", incoming.getCompletedDate()));
+            }
+        }
+        if (settled != null) {
+            settled.execute();
+            expenseCache.invalidate(batch.get(0).getUsername());
+        }
+
+        int duplicates = batch.size() - byFingerprint.size();
+        if (byFingerprint.isEmpty()) {
+            return new BatchResult(0, duplicates);
+        }
+
+        List<Expense> toInsert = new ArrayList<>(byFingerprint.values());
+        // Inserimento e $inc dei totali non devono essere separati da un rebuild dello stesso utente
+        return rollupService.locked(batch.get(0).getUsername(), () -> insert(toInsert, duplicates));
+    }
+
+    private BatchResult insert(List<Expense> toInsert, int duplicates) {
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Expense.class);
+        ops.insert(toInsert);
+        try {
+            int inserted = ops.execute().getInsertedCount();
+            rollupService.added(toInsert);
+            expenseCache.invalidate(toInsert);
+            return new BatchResult(inserted, duplicates);
+        } catch (BulkOperationException e) {
+            // Un import concorrente dello stesso file può inserire le stesse righe dopo la query: ci pensa l'indice
+            Set<Integer> rejected = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+                rejected.add(error.getIndex());
+            }
+            List<Expense> inserted = new ArrayList<>(toInsert.size() - rejected.size());
+            for (int i = 0; i < toInsert.size(); i++) {
+                if (!rejected.contains(i)) {
+                    inserted.add(toInsert.get(i));
+                }
+            }
+            rollupService.added(inserted);
+            expenseCache.invalidate(inserted);
+            return new BatchResult(e.getResult().getInsertedCount(), duplicates + rejected.size());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.spendyteam.expense.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Utility.CalendarRange;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Cache in memoria, per utente, delle letture ripetute dalla dashboard: la lista completa delle spese
+ * e i totali mensili per anno. Il peso di un utente è il numero delle sue spese; le voci scadono dopo
+ * un TTL e vengono invalidate da ogni scrittura fatta su questa istanza.
+ * Statistiche di hit, miss ed eviction su /actuator/metrics/cache.*.
+ */
+@Service
+public class ExpenseCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${expense.cache.max-expenses:200000}")
+    private long maxExpenses;
+
+    @Value("${expense.cache.max-users:10000}")
+    private long maxUsers;
+
+    @Value("${expense.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    // Spese di un utente nell'ordine (startedDate, id), non modificabili
+    private Cache<String, List<Expense>> expenses;
+
+    // Totali mensili per anno di ciascun utente
+    private Cache<String, ConcurrentMap<Integer, Map<String, BigDecimal>>> monthlyTotals;
+
+    @PostConstruct
+    public void init() {
+        expenses = Caffeine.newBuilder()
+                .maximumWeight(maxExpenses)
+                .weigher((String username, List<Expense> list) -> Math.max(1, list.size()))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        monthlyTotals = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, expenses, "expenses");
+        CaffeineCacheMetrics.monitor(meterRegistry, monthlyTotals, "monthlyTotals");
+    }
+
+    public List<Expense> expenses(String username, Function<String, List<Expense>> loader) {
+        return expenses.get(username, u -> List.copyOf(loader.apply(u)));
+    }
+
+    // Stesse condizioni di ExpenseQueryService.inRanges, applicate alla lista in cache
+    public List<Expense> expensesIn(String username, List<CalendarRange> ranges, Function<String, List<Expense>> loader) {
+        List<Expense> result = new ArrayList<>();
+        for (Expense expense : expenses(username, loader)) {
+            for (CalendarRange range : ranges) {
+                if (range.includes(expense.getStartedDate(), expense.getCompletedDate())) {
+                    result.add(expense);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    public Map<String, BigDecimal> monthlyTotals(String username, int year, Function<Integer, Map<String, BigDecimal>> loader) {
+        return monthlyTotals.get(username, u -> new ConcurrentHashMap<>())
+                .computeIfAbsent(year, y -> Collections.unmodifiableMap(new LinkedHashMap<>(loader.apply(y))));
+    }
+
+    // Da chiamare dopo ogni scrittura sulle spese dell'utente
+    public void invalidate(String username) {
+        if (username != null) {
+            expenses.invalidate(username);
+            monthlyTotals.invalidate(username);
+        }
+    }
+
+    // Dopo le scritture che toccano le spese di tutti gli utenti, come le migrazioni
+    public void invalidateAll() {
+        expenses.invalidateAll();
+        monthlyTotals.invalidateAll();
+    }
+
+    public void invalidate(Collection<Expense> written) {
+        Set<String> usernames = new HashSet<>();
+        for (Expense expense : written) {
+            usernames.add(expense.getUsername());
+        }
+        usernames.forEach(this::invalidate);
+    }
+}
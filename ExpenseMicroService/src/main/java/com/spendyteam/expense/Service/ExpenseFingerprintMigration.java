@@ -0,0 +1,119 @@
+package com.spendyteam.expense.Service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Utility.ExpenseFingerprint;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Ricalcola le impronte delle spese importate prima che stato e data di completamento uscissero
+ * dal contenuto e che le righe identiche venissero numerate. Le spese di ogni utente vengono
+ * rilette in ordine di _id, cioè di inserimento, così la numerazione è la stessa di un nuovo import
+ * degli stessi file. Al termine viene salvato un marcatore e la migrazione non gira più.
+ */
+@Service
+public class ExpenseFingerprintMigration {
+
+    private static final String MIGRATIONS = "expense_migrations";
+    private static final String ID = "fingerprint-v2";
+
+    // Codice Mongo di violazione di un indice unique
+    private static final int DUPLICATE_KEY = 11000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${expense.migration.batch-size:1000}")
+    private int batchSize;
+
+    // Stessa finestra dell'import, così la numerazione coincide con quella di un nuovo import
+    @Value("${expense.import.occurrence-window-days:7}")
+    private int occurrenceWindowDays;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (mongoTemplate.exists(new Query(Criteria.where("_id").is(ID)), MIGRATIONS)) {
+            return;
+        }
+        Thread.ofVirtual().name("fingerprint-migration").start(() -> {
+            migrate();
+            mongoTemplate.save(new Document("_id", ID), MIGRATIONS);
+        });
+    }
+
+    // Restituisce il numero di impronte aggiornate
+    public long migrate() {
+        long updated = 0;
+        Query imported = new Query(Criteria.where("fingerprint").exists(true));
+        for (String username : mongoTemplate.findDistinct(imported, "username", Expense.class, String.class)) {
+            updated += migrate(username);
+        }
+        return updated;
+    }
+
+    private long migrate(String username) {
+        Query query = new Query(Criteria.where("username").is(username).and("fingerprint").exists(true))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+        query.fields().include("username", "type", "product", "startedDate", "description",
+                "amount", "fee", "currency", "fingerprint");
+
+        ExpenseFingerprint.Occurrences occurrences = new ExpenseFingerprint.Occurrences(Duration.ofDays(occurrenceWindowDays));
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Expense.class);
+        long updated = 0;
+        int pending = 0;
+        try (Stream<Expense> stream = mongoTemplate.stream(query, Expense.class)) {
+            Iterator<Expense> expenses = stream.iterator();
+            while (expenses.hasNext()) {
+                Expense expense = expenses.next();
+                String previous = expense.getFingerprint();
+                expense.setFingerprint(ExpenseFingerprint.of(expense));
+                occurrences.number(expense);
+                if (expense.getFingerprint().equals(previous)) {
+                    continue;
+                }
+                ops.updateOne(new Query(Criteria.where("_id").is(expense.getId())),
+                        Update.update("fingerprint", expense.getFingerprint()));
+                if (++pending >= batchSize) {
+                    updated += execute(ops);
+                    ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Expense.class);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            updated += execute(ops);
+        }
+        return updated;
+    }
+
+    // Un import partito durante la migrazione può aver già inserito la stessa riga con la nuova impronta:
+    // la spesa precedente tiene la vecchia e le altre vengono aggiornate comunque
+    private static long execute(BulkOperations ops) {
+        try {
+            return ops.execute().getModifiedCount();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+            return e.getResult().getModifiedCount();
+        }
+    }
+}
@@ -1,249 +1,223 @@
 package com.spendyteam.expense.Service;
 
-import com.opencsv.CSVParser;
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
+import com.spendyteam.expense.Data.ClassificationRule;
 import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Data.ImportJob;
 import com.spendyteam.expense.Repository.IExpenseRepository;
-import com.spendyteam.expense.Utility.ExpenseClassifier;
+import com.spendyteam.expense.Utility.AmountParser;
+import com.spendyteam.expense.Utility.CalendarRange;
+import com.spendyteam.expense.Utility.DateFormatDetector;
+import com.spendyteam.expense.Utility.ExpenseFields;
+import com.spendyteam.expense.Utility.ExpenseGrouping;
+import com.spendyteam.expense.Utility.ExpenseStatus;
+import com.spendyteam.expense.Utility.ImportContext;
+import com.spendyteam.expense.Utility.ImportSummary;
 import jakarta.ws.rs.core.Response;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.reactive.function.client.WebClient;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.time.LocalTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 public class ExpenseImportService {
 
     @Autowired
     private IExpenseRepository expenseRepository;
-    private WebClient webClient = null;
 
-    public ExpenseImportService() {
-        this.webClient = webClient;
-    }
+    @Autowired
+    private CsvImportPipeline importPipeline;
+
+    @Autowired
+    private ImportJobService importJobService;
+
+    @Autowired
+    private ClassificationRuleService classificationRules;
+
+    @Autowired
+    private ExpenseAggregationService aggregationService;
+
+    @Autowired
+    private ExpenseRollupService rollupService;
+
+    @Autowired
+    private ExpenseQueryService queryService;
+
+    @Autowired
+    private ExpenseCache expenseCache;
+
+    @Autowired
+    private TokenVerifier tokenVerifier;
 
     public Response importExpensesFromCsv(MultipartFile file, String token) throws Exception {
         if (file.isEmpty()) {
             return Response.status(Response.Status.NO_CONTENT).entity("CSV file is empty.").build();
         }
+        try (InputStream in = file.getInputStream()) {
+            return importExpensesFromStream(in, token);
+        }
+    }
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String headerLine = br.readLine(); // read raw header line to detect separator
-            if (headerLine == null) {
-                return Response.status(Response.Status.BAD_REQUEST).entity("CSV file has no header.").build();
-            }
-
-            // detect separator by counting occurrences and choose the one with the highest count
-            int countComma = headerLine.length() - headerLine.replace(",", "").length();
-            int countSemi = headerLine.length() - headerLine.replace(";", "").length();
-            int countTab = headerLine.length() - headerLine.replace("\t", "").length();
-            char separator = ',';
-            int max = Math.max(countComma, Math.max(countSemi, countTab));
-            if (max == countSemi) separator = ';';
-            else if (max == countTab) separator = '\t';
-
-            CSVParser parser = new CSVParserBuilder().withSeparator(separator).build();
-            String[] header = parser.parseLine(headerLine);
-
-            try (CSVReader reader = new CSVReaderBuilder(br).withCSVParser(parser).build()) {
-                Map<String, Integer> idx = mapHeaderToIndex(header);
-
-                String[] line;
-                while ((line = reader.readNext()) != null) {
-                    Expense expense = new Expense();
-
-                    // Helper to get value by canonical name
-                    String type = getValueByIndex(line, idx.get("type"));
-                    String product = getValueByIndex(line, idx.get("product"));
-                    String startedRaw = getValueByIndex(line, idx.get("startedDate"));
-                    String completedRaw = getValueByIndex(line, idx.get("completedDate"));
-                    String description = getValueByIndex(line, idx.get("description"));
-                    String amountRaw = getValueByIndex(line, idx.get("amount"));
-                    String feeRaw = getValueByIndex(line, idx.get("fee"));
-                    String currency = getValueByIndex(line, idx.get("currency"));
-                    String state = getValueByIndex(line, idx.get("state"));
-
-                    expense.setType(type);
-                    expense.setProduct(product);
-
-                    expense.setStartedDate(parseToLocalDateTime(startedRaw));
-                    expense.setCompletedDate(parseToLocalDateTime(completedRaw));
-
-                    expense.setDescription(description);
-                    expense.setAmount(parseBigDecimal(amountRaw));
-                    expense.setFee(parseBigDecimal(feeRaw));
-                    expense.setCurrency(currency);
-                    expense.setState(state);
-                    expense.setCategory(ExpenseClassifier.classify(description));
-
-                    String username = getUsernameFromTokenViaRest(token);
-                    expense.setUsername(username);
-
-                    expenseRepository.save(expense);
-                    System.out.println("Expense saved: " + expense);
-
-                }
-
-                if (expenseRepository.count() > 0) {
-                    // Recupero tutte le spese ordinate per startedDate asc e filtro solo quelle con importo negativo
-                    List<Expense> sorted = expenseRepository.findAll(Sort.by(Sort.Direction.ASC, "startedDate"));
-                    List<Expense> negatives = sorted.stream()
-                            .filter(e -> e.getAmount() != null && e.getAmount().compareTo(BigDecimal.ZERO) < 0)
-                            .collect(Collectors.toList());
-                    return Response.ok("Expenses imported").build();
-                } else {
-                    return Response.status(Response.Status.BAD_REQUEST).entity("No expenses found in the CSV file.").build();
-                }
-            }
-        } catch (DateTimeParseException e) {
-            return Response.status(Response.Status.BAD_REQUEST).entity("Failed to parse date: " + e.getParsedString()).build();
+    // Import in streaming: il corpo della richiesta viene letto man mano, senza passare da MultipartFile
+    public Response importExpensesFromStream(InputStream in, String token) throws Exception {
+        // Il token viene verificato una sola volta per tutto l'import
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
         }
+        ImportContext context = new ImportContext(username);
 
+        ImportSummary summary = importPipeline.run(in, context);
+        if (summary.getStatus() == ExpenseStatus.INVALID_INPUT) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(summary.getMessage()).build();
+        }
+        // Un re-import dello stesso file non aggiunge righe ma non è un errore
+        if (summary.getRowsImported() == 0 && summary.getRowsDuplicate() == 0) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("No expenses found in the CSV file.").build();
+        }
+        return Response.ok(summary).build();
     }
 
-    // Mappa header CSV ai nomi canonici dei campi, usando una lista di sinonimi per ciascun campo
-    private Map<String, Integer> mapHeaderToIndex(String[] header) {
-        Map<String, Integer> indexMap = new HashMap<>();
-        // Canonical keys
-        Map<String, List<String>> synonyms = new HashMap<>();
-        synonyms.put("type", Arrays.asList("Type", "Tipo"));
-        synonyms.put("product", Arrays.asList("Product", "Prodotto", "item", "description_item"));
-        synonyms.put("startedDate", Arrays.asList("started", "started_date", "starteddate", "Data di inizio", "start_date", "Data"));
-        synonyms.put("completedDate", Arrays.asList("completed", "completed_date", "Data di completamento", "data_fine", "end_date", "Data"));
-        synonyms.put("description", Arrays.asList("Description", "Descrizione", "Operazione"));
-        synonyms.put("amount", Arrays.asList("Amount", "Importo", "value", "valore", "totale"));
-        synonyms.put("fee", Arrays.asList("Fee", "tax", "commission"));
-        synonyms.put("currency", Arrays.asList("Currency", "Valuta", "moneta"));
-        synonyms.put("state", Arrays.asList("State", "Stato", "status","Contabilizzazione"));
-
-        for (int i = 0; i < header.length; i++) {
-            String h = header[i].trim().toLowerCase(Locale.ROOT).replaceAll("[\"]", "");
-            for (Map.Entry<String, List<String>> e : synonyms.entrySet()) {
-                for (String syn : e.getValue()) {
-                    if (h.equals(syn.toLowerCase(Locale.ROOT)) || h.contains(syn.toLowerCase(Locale.ROOT))) {
-                        // Se non è già mappato, mappiamo la prima occorrenza
-                        indexMap.putIfAbsent(e.getKey(), i);
-                    }
-                }
-            }
+    // Import asincrono: restituisce subito il job, l'avanzamento si legge con getImportJob
+    public Response submitImportJob(InputStream in, String token) throws Exception {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
+        }
+        try {
+            ImportJob job = importJobService.submit(in, new ImportContext(username));
+            return Response.status(Response.Status.ACCEPTED).entity(job).build();
+        } catch (RejectedExecutionException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Too many imports in progress, retry later.").build();
         }
-        return indexMap;
     }
 
-    private String getValueByIndex(String[] line, Integer idx) {
-        if (idx == null) return null;
-        if (idx < 0 || idx >= line.length) return null;
-        String v = line[idx];
-        if (v == null) return null;
-        v = v.trim();
-        return v.isEmpty() ? null : v;
+    public Response getImportJob(String jobId, String token) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
+        }
+        return importJobService.progress(jobId, username)
+                .map(job -> Response.ok(job).build())
+                .orElseGet(() -> Response.status(Response.Status.NOT_FOUND).entity("Import job not found.").build());
     }
 
-    private LocalDateTime parseToLocalDateTime(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return null;
+    public Response cancelImportJob(String jobId, String token) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
         }
-        String v = value.trim();
+        return importJobService.cancel(jobId, username)
+                .map(job -> Response.ok(job).build())
+                .orElseGet(() -> Response.status(Response.Status.NOT_FOUND).entity("Import job not found.").build());
+    }
 
-        try {
-            return java.time.ZonedDateTime.parse(v).toLocalDateTime();
-        } catch (DateTimeParseException ignored) {
-        }
-
-        // Provo più formati
-        List<String> patterns = Arrays.asList(
-                "yyyy-MM-dd HH:mm:ss",
-                "yyyy-MM-dd'T'HH:mm:ss",
-                "yyyy-MM-dd",
-                "dd/MM/yyyy",
-                "dd/MM/yyyy HH:mm:ss"
-        );
-
-        for (String p : patterns) {
-            try {
-                DateTimeFormatter f = DateTimeFormatter.ofPattern(p);
-                if (p.contains("H") || p.contains("h")) {
-                    return LocalDateTime.parse(v, f);
-                } else {
-                    LocalDate d = LocalDate.parse(v, f);
-                    return d.atStartOfDay();
-                }
-            } catch (DateTimeParseException ignored) {
-            }
+    public Response getRules(String token) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
         }
+        return Response.ok(classificationRules.getRules(username)).build();
+    }
 
-        // Provo come epoch seconds o milliseconds
-        try {
-            long num = Long.parseLong(v);
-            // se ha 13 cifre è millisecondi
-            if (v.length() >= 13) {
-                return LocalDateTime.ofEpochSecond(num / 1000, 0, ZoneOffset.UTC);
-            } else {
-                return LocalDateTime.ofEpochSecond(num, 0, ZoneOffset.UTC);
-            }
-        } catch (NumberFormatException ignored) {
+    public Response addRule(Map<String, String> body, String token) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
         }
+        String keyword = body.get("keyword");
+        String category = body.get("category");
+        if (keyword == null || keyword.isBlank() || category == null || category.isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Keyword and category are required.").build();
+        }
+        String priority = body.get("priority");
+        ClassificationRule rule = classificationRules.addRule(username, keyword.trim(), category.trim(),
+                priority != null ? Integer.parseInt(priority) : 0);
+        return Response.ok(rule).build();
+    }
 
-        // Ultimo tentativo: parse con parser ISO (lasciare che l'eccezione salga)
-        return LocalDateTime.parse(v);
+    public Response deleteRule(String ruleId, String token) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
+        }
+        if (!classificationRules.deleteRule(ruleId, username)) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Rule not found.").build();
+        }
+        return Response.ok("Rule deleted successfully.").build();
     }
 
-    private BigDecimal parseBigDecimal(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return BigDecimal.ZERO;
-        }
-        String v = value.trim();
-        // Rimuovo simboli di valuta e spazi
-        v = v.replaceAll("[€$£¥]", "").trim();
-        v = v.replaceAll("\u00A0", "").trim(); // non-breaking space
-
-        // Se contiene sia '.' che ',', suppongo che '.' sia decimale o ','? Gestisco come thousands separator rimuovendo quello che sembra essere migliaia
-        if (v.contains(",") && v.contains(".")) {
-            // se ultimo separatore è '.' assumo '.' come decimale e rimuovo le virgole
-            int lastComma = v.lastIndexOf(',');
-            int lastDot = v.lastIndexOf('.');
-            if (lastDot > lastComma) {
-                v = v.replaceAll(",", "");
-            } else {
-                v = v.replaceAll("\\.", "");
-                v = v.replaceAll(",", ".");
-            }
-        } else if (v.contains(",") && !v.contains(".")) {
-            // potrebbe essere formato europeo 1.234,56 oppure 1234,56 -> sostituisco la virgola con punto
-            v = v.replaceAll(",", ".");
+    // Dopo una modifica alle regole l'utente può riclassificare in blocco le spese già importate
+    public Response reclassifyExpenses(String token) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
         }
+        long updated = classificationRules.reclassify(username);
+        return Response.ok(Map.of("updated", updated)).build();
+    }
 
-        // Rimuovo tutto quello che non è cifra, punto o meno
-        v = v.replaceAll("[^0-9.\\-]", "");
+    // Rigenera i totali mensili dell'utente dalle spese salvate
+    public Response rebuildRollups(String token) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
+        }
+        long rollups = rollupService.rebuild(username);
+        expenseCache.invalidate(username);
+        return Response.ok(Map.of("rollups", rollups)).build();
+    }
 
-        if (v.isEmpty()) return BigDecimal.ZERO;
+    // Con cursor o limit la lista è paginata; senza, resta la risposta completa dei client esistenti
+    public Response getExpenses(String token, String cursor, Integer limit, ExpenseFields fields) {
+        if (cursor == null && limit == null) {
+            return getExpenses(token, fields);
+        }
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
+        }
+        try {
+            return Response.ok(queryService.page(username, cursor, limit, fields)).build();
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid cursor.").build();
+        }
+    }
 
-        return new BigDecimal(v);
+    // Il token viene verificato prima di iniziare a scrivere la risposta
+    public Response streamExpenses(String token, ExpenseFields fields) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
+        }
+        return Response.ok(queryService.stream(username, fields)).build();
     }
 
-    public Response getExpenses(String token) {
+    public Response getExpenses(String token, ExpenseFields fields) {
         try {
-            String username = getUsernameFromTokenViaRest(token);
-            Iterable<Expense> expenses = expenseRepository.findAll(Sort.by(Sort.Direction.ASC, "startedDate"))
-                    .stream()
-                    .filter(e -> e.getAmount() != null && e.getAmount().compareTo(BigDecimal.ZERO) < 0 && e.getUsername().equals(username))
-                    .collect(Collectors.toList());
+            String username = getUsernameFromToken(token);
+            Sort order = Sort.by(Sort.Direction.ASC, "startedDate");
+            List<?> expenses;
+            if (fields == null) {
+                expenses = expenseCache.expenses(username, this::loadExpenses);
+            } else if (fields.isSummary()) {
+                expenses = expenseRepository.findSummariesByUsername(username, order);
+            } else {
+                expenses = fields.project(queryService.all(username, fields));
+            }
 
-            if (!expenses.iterator().hasNext()) {
+            if (expenses.isEmpty()) {
                 return Response.status(Response.Status.NO_CONTENT).entity("No expenses found.").build();
             }
             return Response.ok(expenses).build();
@@ -253,29 +227,20 @@ public class ExpenseImportService {
     }
 
 
-    public Response getExpenseByDate(String startedDate, String endDate, String token) {
+    public Response getExpenseByDate(String startedDate, String endDate, String token, ExpenseFields fields) {
 
-        String username = getUsernameFromTokenViaRest(token);
+        String username = getUsernameFromToken(token);
 
         try {
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
             LocalDateTime start = parseToLocalDateTime(startedDate, formatter);
             LocalDateTime end = parseToLocalDateTime(endDate, formatter);
 
-            Iterable<Expense> expenses = expenseRepository.findAll().stream()
-                .filter(e -> e.getStartedDate() != null
-                        && e.getCompletedDate() != null
-                        && !e.getStartedDate().isBefore(start)
-                        && !e.getCompletedDate().isAfter(end)
-                        && e.getStartedDate().isBefore(end)
-                        && e.getCompletedDate().isAfter(start)
-                        && e.getAmount() != null
-                        && e.getAmount().compareTo(BigDecimal.ZERO) < 0)
-                .filter(e -> e.getUsername().equals(username))
-                .toList();
-
+            List<?> expenses = fields == null
+                    ? expenseRepository.findExpensesByUsernameAndDateRange(username, start, end, Sort.by(Sort.Direction.ASC, "startedDate"))
+                    : fields.project(queryService.between(username, start, end, fields));
 
-            if (!expenses.iterator().hasNext()) {
+            if (expenses.isEmpty()) {
                 return Response.status(Response.Status.NO_CONTENT).entity("No expenses found for the given date range.").build();
             }
             return Response.ok(expenses).build();
@@ -294,75 +259,122 @@ public class ExpenseImportService {
         return LocalDateTime.parse(value.trim(), formatter);
     }
 
-    public Response getExpenseByMonth_Year(String month, String year, String token) {
+    public Response getExpenseByMonth_Year(String month, String year, String token, ExpenseFields fields) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
+        }
+        if (month == null || year == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid month or year.").build();
+        }
+        CalendarRange range;
+        try {
+            range = CalendarRange.ofMonth(YearMonth.of(Integer.parseInt(year.trim()), Integer.parseInt(month.trim())));
+        } catch (NumberFormatException | DateTimeException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid month or year.").build();
+        }
 
-        String startDate = year + "-" + month + "-01 00:00:00";
-        String endDate = year + "-" + month + "-31 23:59:59";
+        List<Expense> expenses = expensesIn(username, List.of(range), fields);
+        if (expenses.isEmpty()) {
+            return Response.status(Response.Status.NO_CONTENT).entity("No expenses found for the given date range.").build();
+        }
+        return Response.ok(fields != null ? fields.project(expenses) : expenses).build();
+    }
 
-        Response res = getExpenseByDate(startDate, endDate, token);
+    // Più mesi in una sola richiesta (es. "2024-01,2024-02"): le spese tornano raggruppate per mese
+    public Response getExpenseByMonths(String months, String token, ExpenseFields fields) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
+        }
+        Set<YearMonth> requested = new TreeSet<>();
+        try {
+            for (String month : months.split(",")) {
+                if (!month.isBlank()) {
+                    requested.add(YearMonth.parse(month.trim()));
+                }
+            }
+        } catch (DateTimeException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid month: " + e.getMessage()).build();
+        }
+        if (requested.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("No months requested.").build();
+        }
 
-        if (res.getStatus() == Response.Status.OK.getStatusCode()) {
-            return Response.ok(res.getEntity()).build();
-        } else {
-            return Response.status(res.getStatus()).entity(res.getEntity()).build();
+        Map<String, List<Object>> byMonth = new LinkedHashMap<>();
+        requested.forEach(m -> byMonth.put(m.toString(), new ArrayList<>()));
+        for (Expense expense : expensesIn(username, CalendarRange.ofMonths(requested), fields)) {
+            byMonth.get(YearMonth.from(expense.getStartedDate()).toString())
+                    .add(fields != null ? fields.project(expense) : expense);
         }
+        return Response.ok(byMonth).build();
     }
 
+    // Lista completa dell'utente, caricata nella cache alla prima lettura
+    private List<Expense> loadExpenses(String username) {
+        return queryService.all(username, null);
+    }
 
+    // Senza proiezione le spese dei mesi vengono filtrate dalla lista in cache
+    private List<Expense> expensesIn(String username, List<CalendarRange> ranges, ExpenseFields fields) {
+        return fields == null
+                ? expenseCache.expensesIn(username, ranges, this::loadExpenses)
+                : queryService.inRanges(username, ranges, fields);
+    }
 
     public Response getMonthly_Amount_of_Year(String year , String token) {
-        String startDate = year + "-01-01 00:00:00";
-        String endDate = year + "-12-31 23:59:59";
-
-        Response res = getExpenseByDate(startDate, endDate, token);
-
-        if (res.getStatus() == Response.Status.OK.getStatusCode()) {
-            Iterable<?> expensesObj = (Iterable<?>) res.getEntity();
-
-            HashMap<String, BigDecimal> monthlyAmount = new HashMap<>();
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
+        }
+        try {
+            // Totali precalcolati: al massimo 12 documenti letti dall'indice
+            Map<String, BigDecimal> monthlyAmount = expenseCache.monthlyTotals(username, Integer.parseInt(year.trim()),
+                    y -> rollupService.monthlyTotals(username, y));
 
-            for (Object o : expensesObj) {
-                if (!(o instanceof Expense expense)) continue;
-                if (expense.getStartedDate() != null) {
-                    if (expense.getAmount().compareTo(BigDecimal.ZERO) > 0) {
-                        continue;
-                    }
-                    String monthKey = expense.getStartedDate().format(DateTimeFormatter.ofPattern("yyyy-MM"));
-                    monthlyAmount.put(monthKey, monthlyAmount.getOrDefault(monthKey, BigDecimal.ZERO).add(expense.getAmount()));
-                }
+            if (monthlyAmount.isEmpty()) {
+                return Response.status(Response.Status.NO_CONTENT).entity("No expenses found for the given year.").build();
             }
-
             return Response.ok(monthlyAmount).build();
-        }
-        else if (res.getStatus() == Response.Status.NO_CONTENT.getStatusCode()) {
-            return Response.status(Response.Status.NO_CONTENT).entity("No expenses found for the given year.").build();
-        }
-        else {
-            return Response.status(res.getStatus()).entity(res.getEntity()).build();
+        } catch (NumberFormatException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid year: " + year).build();
         }
     }
 
-    private String getUsernameFromTokenViaRest(String token) {
+    // Totali per giorno, settimana, mese o categoria nell'intervallo [from, to], estremi inclusi
+    public Response aggregateExpenses(String groupBy, String from, String to, String token) {
+        String username = getUsernameFromToken(token);
+        if (username == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build();
+        }
+        ExpenseGrouping grouping;
+        LocalDateTime start;
+        LocalDateTime end;
         try {
-            Map<String, String> response = webClient.post()
-                    .uri("http://localhost:8080/gateway/verify-token")
-                    .bodyValue(Map.of("token", token))
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
-
-            // La risposta JSON dovrebbe essere tipo {"username": "theUser"}
-            return response != null ? response.get("username") : null;
-        } catch (Exception e) {
-            return null;
+            grouping = ExpenseGrouping.fromParam(groupBy);
+            start = LocalDate.parse(from).atStartOfDay();
+            end = LocalDate.parse(to).atTime(LocalTime.MAX);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid aggregation parameters: " + e.getMessage()).build();
         }
+        return Response.ok(aggregationService.aggregate(username, start, end, grouping)).build();
+    }
+
+    private String getUsernameFromToken(String token) {
+        return tokenVerifier.username(token);
     }
 
     public Response deleteExpense(String expenseId) {
         try {
             Optional<Expense> expenseOpt = expenseRepository.findById(expenseId);
             if (expenseOpt.isPresent()) {
-                expenseRepository.deleteById(expenseId);
+                Expense expense = expenseOpt.get();
+                rollupService.locked(expense.getUsername(), () -> {
+                    expenseRepository.deleteById(expenseId);
+                    rollupService.removed(expense);
+                    return null;
+                });
+                expenseCache.invalidate(expense.getUsername());
                 return Response.status(Response.Status.OK).entity("Expense deleted successfully.").build();
 
             } else {
@@ -379,20 +391,24 @@ public class ExpenseImportService {
 
             expense.setType(body.get("type"));
             expense.setProduct(body.get("product"));
-            expense.setStartedDate(parseToLocalDateTime(body.get("startedDate")));
-            expense.setCompletedDate(parseToLocalDateTime(body.get("completedDate")));
+            expense.setStartedDate(DateFormatDetector.parseDate(body.get("startedDate")));
+            expense.setCompletedDate(DateFormatDetector.parseDate(body.get("completedDate")));
             expense.setDescription(body.get("description"));
-            expense.setAmount(parseBigDecimal(body.get("amount")));
-            expense.setFee(parseBigDecimal(body.get("fee")));
+            expense.setAmount(AmountParser.parse(body.get("amount")));
+            expense.setFee(AmountParser.parse(body.get("fee")));
             expense.setCurrency(body.get("currency"));
             expense.setState(body.get("state"));
-            expense.setCategory(ExpenseClassifier.classify(body.get("description")));
-            expense.setCategory(ExpenseClassifier.classify(body.get("description")));
 
-            String username = getUsernameFromTokenViaRest(token);
+            String username = getUsernameFromToken(token);
+            expense.setCategory(classificationRules.classify(body.get("description"), username));
             expense.setUsername(username);
 
-            expenseRepository.save(expense);
+            rollupService.locked(username, () -> {
+                expenseRepository.save(expense);
+                rollupService.added(List.of(expense));
+                return null;
+            });
+            expenseCache.invalidate(username);
             return Response.status(Response.Status.OK).entity("Expense added successfully.").build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Failed to add expense: " + e.getMessage()).build();
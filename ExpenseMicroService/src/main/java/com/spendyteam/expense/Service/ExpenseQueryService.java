@@ -0,0 +1,159 @@
+package com.spendyteam.expense.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Utility.CalendarRange;
+import com.spendyteam.expense.Utility.ExpenseCursor;
+import com.spendyteam.expense.Utility.ExpenseFields;
+import com.spendyteam.expense.Utility.ExpensePage;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ConvertOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Lettura delle spese di un utente a pagine (keyset su startedDate e id) o in streaming:
+ * la memoria usata da una richiesta non dipende dal numero di spese dell'utente.
+ */
+@Service
+public class ExpenseQueryService {
+
+    // Tipo BSON string
+    private static final int STRING = 2;
+
+    private static final Sort ORDER = Sort.by(Sort.Direction.ASC, "startedDate").and(Sort.by(Sort.Direction.ASC, "id"));
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${expense.query.default-page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${expense.query.max-page-size:500}")
+    private int maxPageSize;
+
+    public ExpensePage page(String username, String cursor, Integer limit, ExpenseFields fields) {
+        int size = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+
+        Criteria criteria = expensesOf(username);
+        if (cursor != null && !cursor.isBlank()) {
+            criteria = new Criteria().andOperator(criteria, after(ExpenseCursor.decode(cursor)));
+        }
+        // Un documento in più dice se esiste la pagina successiva
+        Query query = new Query(criteria).with(ORDER).limit(size + 1);
+        if (fields != null) {
+            fields.applyTo(query);
+        }
+        List<Expense> expenses = mongoTemplate.find(query, Expense.class);
+
+        String next = null;
+        if (expenses.size() > size) {
+            expenses = expenses.subList(0, size);
+            next = ExpenseCursor.after(expenses.get(size - 1)).encode();
+        }
+        return new ExpensePage(fields != null ? fields.project(expenses) : expenses, next);
+    }
+
+    // NDJSON: ogni spesa viene scritta appena letta dal cursore Mongo, senza raccoglierle in una lista
+    public StreamingResponseBody stream(String username, ExpenseFields fields) {
+        Query query = new Query(expensesOf(username)).with(ORDER);
+        if (fields != null) {
+            fields.applyTo(query);
+        }
+        return (OutputStream out) -> {
+            try (Stream<Expense> stream = mongoTemplate.stream(query, Expense.class)) {
+                Iterator<Expense> expenses = stream.iterator();
+                while (expenses.hasNext()) {
+                    Expense expense = expenses.next();
+                    out.write(objectMapper.writeValueAsBytes(fields != null ? fields.project(expense) : expense));
+                    out.write('\n');
+                }
+            }
+        };
+    }
+
+    // Spese iniziate e completate dentro uno degli intervalli, con una sola query: un ramo $or indicizzato per intervallo
+    public List<Expense> inRanges(String username, List<CalendarRange> ranges, ExpenseFields fields) {
+        List<Criteria> branches = new ArrayList<>(ranges.size());
+        for (CalendarRange range : ranges) {
+            branches.add(Criteria.where("startedDate").gte(range.start()).lt(range.end())
+                    .and("completedDate").gt(range.start()).lt(range.end()));
+        }
+        Criteria criteria = expensesOf(username);
+        if (branches.size() == 1) {
+            criteria = new Criteria().andOperator(criteria, branches.get(0));
+        } else {
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(branches));
+        }
+        return find(criteria, fields);
+    }
+
+    // Stesse condizioni di IExpenseRepository.findExpensesByUsername, con i soli campi richiesti
+    public List<Expense> all(String username, ExpenseFields fields) {
+        return find(expensesOf(username), fields);
+    }
+
+    // Stesse condizioni di IExpenseRepository.findExpensesByUsernameAndDateRange, con i soli campi richiesti
+    public List<Expense> between(String username, LocalDateTime start, LocalDateTime end, ExpenseFields fields) {
+        return find(expensesOf(username)
+                .and("startedDate").gte(start).lt(end)
+                .and("completedDate").gt(start).lte(end), fields);
+    }
+
+    private List<Expense> find(Criteria criteria, ExpenseFields fields) {
+        Query query = new Query(criteria).with(ORDER);
+        if (fields != null) {
+            fields.applyTo(query);
+        }
+        return mongoTemplate.find(query, Expense.class);
+    }
+
+    private static Criteria expensesOf(String username) {
+        return Criteria.where("username").is(username).andOperator(negativeAmount());
+    }
+
+    // Come IExpenseRepository.NEGATIVE_AMOUNT: include gli importi ancora salvati come stringa.
+    // Lo zero è già Decimal128: nelle query tipizzate su Expense un Integer non verrebbe convertito al tipo di amount
+    public static Criteria negativeAmount() {
+        return new Criteria().orOperator(
+                Criteria.where("amount").lt(Decimal128.POSITIVE_ZERO),
+                Criteria.where("amount").type(STRING).regex("^\\s*-"));
+    }
+
+    // Importo come Decimal128 nelle aggregazioni, anche se ancora stringa. Le stringhe che $convert non
+    // legge valgono null e restano fuori dalle somme fino al rebuild che segue la migrazione
+    public static AggregationExpression decimalAmount() {
+        return ConvertOperators.Convert.convertValueOf("amount").to("decimal").onErrorReturn(null);
+    }
+
+    // Spese che seguono il cursore nell'ordine (startedDate, id); le date nulle vengono prima di tutte le altre
+    private static Criteria after(ExpenseCursor cursor) {
+        Object id = ObjectId.isValid(cursor.id()) ? new ObjectId(cursor.id()) : cursor.id();
+        if (cursor.startedDate() == null) {
+            return new Criteria().orOperator(
+                    Criteria.where("startedDate").is(null).and("_id").gt(id),
+                    Criteria.where("startedDate").ne(null));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("startedDate").gt(cursor.startedDate()),
+                Criteria.where("startedDate").is(cursor.startedDate()).and("_id").gt(id));
+    }
+}
@@ -0,0 +1,272 @@
+package com.spendyteam.expense.Service;
+
+import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Data.ExpenseRollup;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.*;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Mantiene la collezione expense_rollups: per ogni utente, mese e categoria la somma, il numero,
+ * il minimo e il massimo delle spese. Viene aggiornata a ogni scrittura con $inc, così i totali
+ * annuali si leggono con una query indicizzata su 12 documenti invece di ricalcolarli ogni volta.
+ * Le scritture delle spese e le ricostruzioni dei totali dello stesso utente passano da locked,
+ * così ogni spesa viene contata dal rebuild oppure dal suo $inc, mai da entrambi.
+ */
+@Service
+public class ExpenseRollupService {
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final String UNCLASSIFIED = "Non classificato";
+
+    // Lock a strisce per utente; ReentrantLock perché gli import scrivono da virtual thread
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    private record Key(String username, String month, String category) {
+    }
+
+    private static final class Totals {
+        BigDecimal sum = BigDecimal.ZERO;
+        long count;
+        BigDecimal min;
+        BigDecimal max;
+
+        void add(BigDecimal amount) {
+            sum = sum.add(amount);
+            count++;
+            min = min == null || amount.compareTo(min) < 0 ? amount : min;
+            max = max == null || amount.compareTo(max) > 0 ? amount : max;
+        }
+    }
+
+    // Esegue la scrittura di spese dell'utente e il relativo aggiornamento dei totali senza un rebuild in mezzo
+    public <T> T locked(String username, Supplier<T> action) {
+        ReentrantLock lock = locks[Math.floorMod(Objects.hashCode(username), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Aggiunge ai totali le spese appena salvate
+    public void added(Collection<Expense> expenses) {
+        Map<Key, Totals> totals = group(expenses);
+        if (totals.isEmpty()) {
+            return;
+        }
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExpenseRollup.class);
+        for (Map.Entry<Key, Totals> entry : totals.entrySet()) {
+            Totals t = entry.getValue();
+            ops.upsert(byKey(entry.getKey()), new Update()
+                    .inc("sum", new Decimal128(t.sum))
+                    .inc("count", t.count)
+                    .min("min", new Decimal128(t.min))
+                    .max("max", new Decimal128(t.max)));
+        }
+        ops.execute();
+    }
+
+    // Toglie dai totali una spesa già cancellata; minimo e massimo vengono ricalcolati dalle spese rimaste
+    public void removed(Expense expense) {
+        for (Key key : group(List.of(expense)).keySet()) {
+            mongoTemplate.updateFirst(byKey(key), new Update()
+                    .inc("sum", new Decimal128(expense.getAmount().negate()))
+                    .inc("count", -1), ExpenseRollup.class);
+            refreshBounds(key);
+        }
+    }
+
+    // Totali mensili dell'anno: al massimo 12 documenti letti dall'indice
+    public Map<String, BigDecimal> monthlyTotals(String username, int year) {
+        Query query = new Query(Criteria.where("username").is(username)
+                .and("category").is(ExpenseRollup.ALL_CATEGORIES)
+                .and("month").gte(year + "-01").lte(year + "-12"))
+                .with(Sort.by(Sort.Direction.ASC, "month"));
+
+        Map<String, BigDecimal> totals = new LinkedHashMap<>();
+        for (ExpenseRollup rollup : mongoTemplate.find(query, ExpenseRollup.class)) {
+            if (rollup.getCount() > 0) {
+                totals.put(rollup.getMonth(), rollup.getSum());
+            }
+        }
+        return totals;
+    }
+
+    // Rigenera da zero i totali di un utente a partire dalle spese salvate. I documenti vengono
+    // sovrascritti uno per uno e poi si tolgono quelli rimasti senza spese: chi legge non vede mai totali vuoti
+    public long rebuild(String username) {
+        return locked(username, () -> rebuildLocked(username));
+    }
+
+    private long rebuildLocked(String username) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(negativeExpenses(username)),
+                Aggregation.project()
+                        .and(DateOperators.dateOf("startedDate")
+                                .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId()))
+                                .toString("%Y-%m")).as("month")
+                        .and(ConditionalOperators.ifNull("category").then(UNCLASSIFIED)).as("category")
+                        .and(ExpenseQueryService.decimalAmount()).as("amount"),
+                Aggregation.group("month", "category")
+                        .sum("amount").as("sum")
+                        .count().as("count")
+                        .min("amount").as("min")
+                        .max("amount").as("max"));
+
+        // Il totale "*" di ogni mese si ottiene sommando le categorie
+        List<Document> rollups = new ArrayList<>();
+        Map<String, Document> monthTotals = new TreeMap<>();
+        for (Document group : mongoTemplate.aggregate(aggregation, Expense.class, Document.class)) {
+            if (group.get("min") == null) {
+                // Solo importi che decimalAmount non riesce a leggere
+                continue;
+            }
+            Document id = group.get("_id", Document.class);
+            String month = id.getString("month");
+            Document rollup = rollup(username, month, id.getString("category"), group);
+            rollups.add(rollup);
+            monthTotals.merge(month, rollup(username, month, ExpenseRollup.ALL_CATEGORIES, group), ExpenseRollupService::merge);
+        }
+        rollups.addAll(monthTotals.values());
+
+        Set<Key> rebuilt = new HashSet<>();
+        if (!rollups.isEmpty()) {
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExpenseRollup.class);
+            for (Document rollup : rollups) {
+                Key key = new Key(username, rollup.getString("month"), rollup.getString("category"));
+                rebuilt.add(key);
+                ops.upsert(byKey(key), new Update()
+                        .set("sum", rollup.get("sum"))
+                        .set("count", rollup.get("count"))
+                        .set("min", rollup.get("min"))
+                        .set("max", rollup.get("max")));
+            }
+            ops.execute();
+        }
+
+        Query existing = new Query(Criteria.where("username").is(username));
+        existing.fields().include("month", "category");
+        List<Object> stale = new ArrayList<>();
+        for (Document rollup : mongoTemplate.find(existing, Document.class, mongoTemplate.getCollectionName(ExpenseRollup.class))) {
+            if (!rebuilt.contains(new Key(username, rollup.getString("month"), rollup.getString("category")))) {
+                stale.add(rollup.get("_id"));
+            }
+        }
+        if (!stale.isEmpty()) {
+            mongoTemplate.remove(new Query(Criteria.where("_id").in(stale)), ExpenseRollup.class);
+        }
+        return rollups.size();
+    }
+
+    public void rebuildAll() {
+        for (String username : mongoTemplate.findDistinct(new Query(), "username", Expense.class, String.class)) {
+            if (username != null) {
+                rebuild(username);
+            }
+        }
+    }
+
+    private Map<Key, Totals> group(Collection<Expense> expenses) {
+        Map<Key, Totals> totals = new HashMap<>();
+        for (Expense e : expenses) {
+            if (e.getUsername() == null || e.getStartedDate() == null || e.getAmount() == null || e.getAmount().signum() >= 0) {
+                continue;
+            }
+            String month = e.getStartedDate().format(MONTH);
+            String category = e.getCategory() != null ? e.getCategory() : UNCLASSIFIED;
+            totals.computeIfAbsent(new Key(e.getUsername(), month, category), k -> new Totals()).add(e.getAmount());
+            totals.computeIfAbsent(new Key(e.getUsername(), month, ExpenseRollup.ALL_CATEGORIES), k -> new Totals()).add(e.getAmount());
+        }
+        return totals;
+    }
+
+    private void refreshBounds(Key key) {
+        YearMonth month = YearMonth.parse(key.month(), MONTH);
+        Criteria criteria = negativeExpenses(key.username())
+                .and("startedDate").gte(month.atDay(1).atStartOfDay()).lt(month.plusMonths(1).atDay(1).atStartOfDay());
+        if (UNCLASSIFIED.equals(key.category())) {
+            criteria.and("category").in(null, UNCLASSIFIED);
+        } else if (!ExpenseRollup.ALL_CATEGORIES.equals(key.category())) {
+            criteria.and("category").is(key.category());
+        }
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.project().and(ExpenseQueryService.decimalAmount()).as("amount"),
+                Aggregation.group().min("amount").as("min").max("amount").as("max"));
+        Document bounds = mongoTemplate.aggregate(aggregation, Expense.class, Document.class).getUniqueMappedResult();
+
+        if (bounds == null) {
+            // Non resta alcuna spesa per questa chiave
+            mongoTemplate.remove(byKey(key), ExpenseRollup.class);
+        } else {
+            mongoTemplate.updateFirst(byKey(key), new Update()
+                    .set("min", bounds.get("min"))
+                    .set("max", bounds.get("max")), ExpenseRollup.class);
+        }
+    }
+
+    // Comprende gli importi non ancora convertiti da ExpenseAmountMigration, letti con decimalAmount
+    private static Criteria negativeExpenses(String username) {
+        return Criteria.where("username").is(username)
+                .andOperator(ExpenseQueryService.negativeAmount());
+    }
+
+    private static Query byKey(Key key) {
+        return new Query(Criteria.where("username").is(key.username())
+                .and("category").is(key.category())
+                .and("month").is(key.month()));
+    }
+
+    private static Document rollup(String username, String month, String category, Document group) {
+        return new Document("username", username)
+                .append("month", month)
+                .append("category", category)
+                .append("sum", group.get("sum"))
+                .append("count", group.get("count", Number.class).longValue())
+                .append("min", group.get("min"))
+                .append("max", group.get("max"));
+    }
+
+    private static Document merge(Document a, Document b) {
+        BigDecimal minA = a.get("min", Decimal128.class).bigDecimalValue();
+        BigDecimal minB = b.get("min", Decimal128.class).bigDecimalValue();
+        BigDecimal maxA = a.get("max", Decimal128.class).bigDecimalValue();
+        BigDecimal maxB = b.get("max", Decimal128.class).bigDecimalValue();
+        return a.append("sum", new Decimal128(a.get("sum", Decimal128.class).bigDecimalValue()
+                        .add(b.get("sum", Decimal128.class).bigDecimalValue())))
+                .append("count", a.getLong("count") + b.getLong("count"))
+                .append("min", new Decimal128(minA.min(minB)))
+                .append("max", new Decimal128(maxA.max(maxB)));
+    }
+}
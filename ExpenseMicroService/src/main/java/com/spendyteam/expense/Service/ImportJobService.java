@@ -0,0 +1,186 @@
+package com.spendyteam.expense.Service;
+
+import com.spendyteam.expense.Data.ImportJob;
+import com.spendyteam.expense.Repository.IImportJobRepository;
+import com.spendyteam.expense.Utility.ExpenseStatus;
+import com.spendyteam.expense.Utility.ImportContext;
+import com.spendyteam.expense.Utility.ImportProgress;
+import com.spendyteam.expense.Utility.ImportSummary;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gestisce gli import asincroni: il file viene salvato su disco, il job accodato
+ * sull'executor dedicato e il riepilogo finale persistito in Mongo.
+ */
+@Service
+public class ImportJobService {
+
+    @Autowired
+    private IImportJobRepository jobRepository;
+
+    @Autowired
+    private CsvImportPipeline importPipeline;
+
+    @Autowired
+    private ThreadPoolExecutor importJobExecutor;
+
+    // Job in coda o in esecuzione su questa istanza
+    private final Map<String, RunningJob> running = new ConcurrentHashMap<>();
+
+    // state passa da QUEUED a RUNNING (worker) o a CANCELLED (cancel): chi vince il CAS chiude il job
+    private record RunningJob(ImportJob job, ImportContext context, Path file, FutureTask<Void> task,
+                              AtomicReference<String> state) {
+    }
+
+    // I job rimasti aperti da un'esecuzione precedente non verranno mai completati
+    @PostConstruct
+    public void markInterruptedJobs() {
+        List<ImportJob> stale = jobRepository.findByStatusIn(List.of(ImportJob.QUEUED, ImportJob.RUNNING));
+        for (ImportJob job : stale) {
+            job.setStatus(ImportJob.FAILED);
+            job.setMessage("Import interrupted by a service restart.");
+            job.setFinishedAt(LocalDateTime.now());
+        }
+        jobRepository.saveAll(stale);
+    }
+
+    public ImportJob submit(InputStream in, ImportContext context) throws IOException {
+        // Il corpo della richiesta non è più leggibile dopo la risposta: lo copio su un file temporaneo
+        Path file = Files.createTempFile("expense-import-", ".csv");
+        try {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        ImportJob job = new ImportJob();
+        job.setUsername(context.getUsername());
+        job.setStatus(ImportJob.QUEUED);
+        job.setCreatedAt(LocalDateTime.now());
+        job = jobRepository.save(job);
+
+        String jobId = job.getId();
+        FutureTask<Void> task = new FutureTask<>(() -> run(jobId), null);
+        running.put(jobId, new RunningJob(job, context, file, task, new AtomicReference<>(ImportJob.QUEUED)));
+        try {
+            importJobExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            cleanup(jobId);
+            finish(job, context.getProgress(), ImportJob.FAILED, "Too many imports in progress, retry later.");
+            throw e;
+        }
+        return job;
+    }
+
+    private void run(String jobId) {
+        RunningJob entry = running.get(jobId);
+        // Annullato mentre era in coda: il job è già stato chiuso da cancel
+        if (entry == null || !entry.state().compareAndSet(ImportJob.QUEUED, ImportJob.RUNNING)) {
+            return;
+        }
+        ImportJob job = entry.job();
+        ImportProgress progress = entry.context().getProgress();
+        synchronized (job) {
+            job.setStatus(ImportJob.RUNNING);
+            jobRepository.save(job);
+        }
+
+        try (InputStream in = Files.newInputStream(entry.file())) {
+            ImportSummary summary = importPipeline.run(in, entry.context());
+            if (summary.getStatus() == ExpenseStatus.INVALID_INPUT) {
+                finish(job, progress, ImportJob.FAILED, summary.getMessage());
+            } else {
+                finish(job, progress, ImportJob.COMPLETED, "Expenses imported");
+            }
+        } catch (CancellationException | InterruptedException e) {
+            finish(job, progress, ImportJob.CANCELLED, "Import cancelled.");
+        } catch (Exception e) {
+            finish(job, progress, ImportJob.FAILED, "Failed to import CSV: " + e.getMessage());
+        } finally {
+            cleanup(jobId);
+        }
+    }
+
+    public Optional<ImportJob> progress(String jobId, String username) {
+        RunningJob entry = running.get(jobId);
+        if (entry != null) {
+            if (!entry.job().getUsername().equals(username)) {
+                return Optional.empty();
+            }
+            return Optional.of(snapshot(entry.job(), entry.context().getProgress()));
+        }
+        return jobRepository.findById(jobId).filter(j -> username.equals(j.getUsername()));
+    }
+
+    public Optional<ImportJob> cancel(String jobId, String username) {
+        RunningJob entry = running.get(jobId);
+        if (entry == null || !entry.job().getUsername().equals(username)) {
+            return jobRepository.findById(jobId).filter(j -> username.equals(j.getUsername()));
+        }
+        ImportProgress progress = entry.context().getProgress();
+        progress.cancel();
+        // Un job ancora in coda non partirà mai: lo chiudo subito. Se è già partito
+        // la pipeline vede il flag e il worker lo chiude da solo
+        if (entry.state().compareAndSet(ImportJob.QUEUED, ImportJob.CANCELLED)) {
+            entry.task().cancel(false);
+            finish(entry.job(), progress, ImportJob.CANCELLED, "Import cancelled.");
+            cleanup(jobId);
+        }
+        return Optional.of(snapshot(entry.job(), progress));
+    }
+
+    // Solo la prima chiusura viene registrata
+    private void finish(ImportJob job, ImportProgress progress, String status, String message) {
+        synchronized (job) {
+            if (isFinished(job.getStatus())) {
+                return;
+            }
+            snapshot(job, progress);
+            job.setStatus(status);
+            job.setMessage(message);
+            job.setFinishedAt(LocalDateTime.now());
+            jobRepository.save(job);
+        }
+    }
+
+    private static boolean isFinished(String status) {
+        return ImportJob.COMPLETED.equals(status) || ImportJob.FAILED.equals(status)
+                || ImportJob.CANCELLED.equals(status);
+    }
+
+    private void cleanup(String jobId) {
+        RunningJob entry = running.remove(jobId);
+        if (entry != null) {
+            try {
+                Files.deleteIfExists(entry.file());
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private ImportJob snapshot(ImportJob job, ImportProgress progress) {
+        synchronized (job) {
+            job.setRowsParsed(progress.getRowsParsed());
+            job.setRowsWritten(progress.getRowsWritten());
+            job.setRowsRejected(progress.getRowsRejected());
+            job.setRowsDuplicate(progress.getRowsDuplicate());
+            job.setRowsPerSecond(progress.getRowsPerSecond());
+            return job;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.spendyteam.expense.Service;
+
+import com.spendy.security.JwksClient;
+import com.spendy.security.JwtSecrets;
+import com.spendy.security.JwtVerifier;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Ricava lo username dal token delle richieste. In modalità local firma e scadenza vengono
+ * verificate qui senza chiamate di rete per richiesta: i token RS256 con le chiavi pubbliche
+ * del JWKS del gateway, copiato in memoria e aggiornato in background, quelli HS256 con la
+ * stessa jwt.secret del gateway. In modalità gateway il token viene inviato a /gateway/verify-token.
+ */
+@Component
+public class TokenVerifier {
+
+    public static final String LOCAL = "local";
+    public static final String GATEWAY = "gateway";
+
+    @Autowired
+    private WebClient webClient;
+
+    @Value("${expense.auth.mode:local}")
+    private String mode;
+
+    @Value("${expense.auth.gateway-verify-url:http://localhost:8080/gateway/verify-token}")
+    private String gatewayVerifyUrl;
+
+    @Value("${jwt.secret:}")
+    private String secret;
+
+    @Value("${expense.auth.jwks-url:http://localhost:8080/gateway/jwks.json}")
+    private String jwksUrl;
+
+    @Value("${expense.auth.jwks-refresh-seconds:300}")
+    private long jwksRefreshSeconds;
+
+    // Intervallo minimo tra due aggiornamenti anticipati da un kid sconosciuto
+    @Value("${expense.auth.jwks-min-refresh-seconds:30}")
+    private long jwksMinRefreshSeconds;
+
+    private JwksClient jwksClient;
+    private JwtVerifier verifier;
+
+    @PostConstruct
+    public void init() {
+        if (GATEWAY.equals(mode)) {
+            return;
+        }
+        if (!LOCAL.equals(mode)) {
+            throw new IllegalStateException("Unknown expense.auth.mode: " + mode);
+        }
+        if (jwksUrl != null && !jwksUrl.isBlank()) {
+            jwksClient = new JwksClient(URI.create(jwksUrl), Duration.ofSeconds(jwksRefreshSeconds),
+                    Duration.ofSeconds(jwksMinRefreshSeconds));
+            jwksClient.start();
+        }
+        // I token HS256 restano accettati finché jwt.secret è configurata
+        byte[] legacySecret = secret == null || secret.isBlank() ? null : JwtSecrets.decode(secret);
+        if (jwksClient == null && legacySecret == null) {
+            throw new IllegalStateException("expense.auth.jwks-url or jwt.secret is required when expense.auth.mode=local");
+        }
+        verifier = new JwtVerifier(jwksClient, legacySecret);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (jwksClient != null) {
+            jwksClient.close();
+        }
+    }
+
+    // null se il token non è valido o è scaduto
+    public String username(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        return verifier != null ? verifyLocally(token) : verifyViaGateway(token);
+    }
+
+    private String verifyLocally(String token) {
+        return verifier.subject(token);
+    }
+
+    private String verifyViaGateway(String token) {
+        try {
+            Map<String, String> response = webClient.post()
+                    .uri(gatewayVerifyUrl)
+                    .bodyValue(Map.of("token", token))
+                    .retrieve()
+                    .bodyToMono(Map.class)
+                    .block();
+
+            // La risposta JSON dovrebbe essere tipo {"username": "theUser"}
+            return response != null ? response.get("username") : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
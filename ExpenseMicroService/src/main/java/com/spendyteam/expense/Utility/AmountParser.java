@@ -0,0 +1,123 @@
+package com.spendyteam.expense.Utility;
+
+import java.math.BigDecimal;
+
+/**
+ * Converte gli importi del CSV in BigDecimal con una sola scansione dei caratteri,
+ * senza espressioni regolari né stringhe intermedie.
+ * Il separatore decimale segue le stesse regole del parsing originale: se compaiono
+ * sia '.' che ',' il decimale è l'ultimo dei due, se compare solo ',' è la virgola.
+ */
+public final class AmountParser {
+
+    // Oltre 18 cifre il valore non sta in un long: se ne occupa il percorso lento
+    private static final int MAX_DIGITS = 18;
+
+    private AmountParser() {
+    }
+
+    public static BigDecimal parse(String value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+
+        long unscaled = 0;
+        int digits = 0;
+        int dots = 0;
+        int commas = 0;
+        int lastDot = -1;
+        int lastComma = -1;
+        int digitsAtLastDot = 0;
+        int digitsAtLastComma = 0;
+        boolean negative = false;
+        boolean kept = false; // è già stato visto un carattere che il parsing originale conserva
+
+        for (int i = 0, len = value.length(); i < len; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_DIGITS) {
+                    return parseSlow(value);
+                }
+                unscaled = unscaled * 10 + (c - '0');
+                kept = true;
+            } else if (c == '.') {
+                dots++;
+                lastDot = i;
+                digitsAtLastDot = digits;
+                kept = true;
+            } else if (c == ',') {
+                commas++;
+                lastComma = i;
+                digitsAtLastComma = digits;
+                kept = true;
+            } else if (c == '-') {
+                // Il segno è valido solo in testa all'importo
+                if (kept) {
+                    return parseSlow(value);
+                }
+                negative = true;
+                kept = true;
+            }
+            // Ogni altro carattere (valuta, spazi, lettere) viene ignorato
+        }
+
+        if (!kept) {
+            return BigDecimal.ZERO;
+        }
+        if (digits == 0) {
+            return parseSlow(value);
+        }
+
+        int scale;
+        if (commas > 0 && (dots == 0 || lastComma > lastDot)) {
+            // Virgola decimale: i punti sono separatori delle migliaia
+            if (commas > 1) {
+                return parseSlow(value);
+            }
+            scale = digits - digitsAtLastComma;
+        } else if (dots > 0) {
+            // Punto decimale: le virgole sono separatori delle migliaia
+            if (dots > 1) {
+                return parseSlow(value);
+            }
+            scale = digits - digitsAtLastDot;
+        } else {
+            scale = 0;
+        }
+
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    // Percorso lento per gli importi fuori dai casi comuni: stesso risultato, o stessa eccezione, del parsing originale
+    private static BigDecimal parseSlow(String value) {
+        if (value.trim().isEmpty()) {
+            return BigDecimal.ZERO;
+        }
+        String v = value.trim();
+        // Rimuovo simboli di valuta e spazi
+        v = v.replaceAll("[€$£¥]", "").trim();
+        v = v.replaceAll("\u00A0", "").trim(); // non-breaking space
+
+        if (v.contains(",") && v.contains(".")) {
+            // se ultimo separatore è '.' assumo '.' come decimale e rimuovo le virgole
+            int lastComma = v.lastIndexOf(',');
+            int lastDot = v.lastIndexOf('.');
+            if (lastDot > lastComma) {
+                v = v.replaceAll(",", "");
+            } else {
+                v = v.replaceAll("\\.", "");
+                v = v.replaceAll(",", ".");
+            }
+        } else if (v.contains(",") && !v.contains(".")) {
+            // potrebbe essere formato europeo 1.234,56 oppure 1234,56 -> sostituisco la virgola con punto
+            v = v.replaceAll(",", ".");
+        }
+
+        // Rimuovo tutto quello che non è cifra, punto o meno
+        v = v.replaceAll("[^0-9.\\-]", "");
+
+        if (v.isEmpty()) return BigDecimal.ZERO;
+
+        return new BigDecimal(v);
+    }
+}
@@ -0,0 +1,42 @@
+package com.spendyteam.expense.Utility;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Intervallo di calendario semiaperto [start, end): la fine è l'inizio del periodo successivo,
+ * così mesi di 28, 30 o 31 giorni non richiedono casi particolari.
+ */
+public record CalendarRange(LocalDateTime start, LocalDateTime end) {
+
+    // Spesa iniziata e completata nell'intervallo: stesse condizioni della query per intervalli
+    public boolean includes(LocalDateTime startedDate, LocalDateTime completedDate) {
+        return startedDate != null && completedDate != null
+                && !startedDate.isBefore(start) && startedDate.isBefore(end)
+                && completedDate.isAfter(start) && completedDate.isBefore(end);
+    }
+
+    public static CalendarRange ofMonth(YearMonth month) {
+        return new CalendarRange(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
+    public static CalendarRange ofYear(int year) {
+        return new CalendarRange(YearMonth.of(year, 1).atDay(1).atStartOfDay(), YearMonth.of(year + 1, 1).atDay(1).atStartOfDay());
+    }
+
+    // Un intervallo per mese, senza unire i mesi consecutivi: una spesa iniziata il 31 gennaio e
+    // completata il 1° febbraio non appartiene a nessuno dei due mesi, e così deve restare quando li si chiede insieme
+    public static List<CalendarRange> ofMonths(Iterable<YearMonth> months) {
+        TreeSet<YearMonth> sorted = new TreeSet<>();
+        months.forEach(sorted::add);
+
+        List<CalendarRange> ranges = new ArrayList<>(sorted.size());
+        for (YearMonth month : sorted) {
+            ranges.add(ofMonth(month));
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,291 @@
+package com.spendyteam.expense.Utility;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Riconosce il formato delle date di un file CSV e lo riusa per tutte le righe.
+ * I formati noti sono letti da parser scritti a mano che non lanciano eccezioni;
+ * solo i valori che nessuno di essi riconosce passano dal parsing con DateTimeFormatter.
+ */
+public class DateFormatDetector {
+
+    public enum Format {
+        // yyyy-MM-dd'T'HH:mm[:ss[.SSSSSSSSS]] seguito da Z o da un offset
+        ISO_OFFSET {
+            @Override
+            LocalDateTime tryParse(String v) {
+                return parseIso(v, true);
+            }
+        },
+        // yyyy-MM-dd'T'HH:mm[:ss[.SSSSSSSSS]]
+        ISO_LOCAL {
+            @Override
+            LocalDateTime tryParse(String v) {
+                return parseIso(v, false);
+            }
+        },
+        // yyyy-MM-dd HH:mm:ss
+        DATE_TIME {
+            @Override
+            LocalDateTime tryParse(String v) {
+                if (v.length() != 19 || v.charAt(10) != ' ') return null;
+                LocalDate date = parseYearFirst(v);
+                return date == null ? null : atTime(date, v, 11);
+            }
+        },
+        // yyyy-MM-dd
+        DATE {
+            @Override
+            LocalDateTime tryParse(String v) {
+                if (v.length() != 10) return null;
+                LocalDate date = parseYearFirst(v);
+                return date == null ? null : date.atStartOfDay();
+            }
+        },
+        // dd/MM/yyyy HH:mm:ss
+        EU_DATE_TIME {
+            @Override
+            LocalDateTime tryParse(String v) {
+                if (v.length() != 19 || v.charAt(10) != ' ') return null;
+                LocalDate date = parseDayFirst(v);
+                return date == null ? null : atTime(date, v, 11);
+            }
+        },
+        // dd/MM/yyyy
+        EU_DATE {
+            @Override
+            LocalDateTime tryParse(String v) {
+                if (v.length() != 10) return null;
+                LocalDate date = parseDayFirst(v);
+                return date == null ? null : date.atStartOfDay();
+            }
+        },
+        // secondi o millisecondi dall'epoch (13 caratteri o più)
+        EPOCH {
+            @Override
+            LocalDateTime tryParse(String v) {
+                int len = v.length();
+                int i = (v.charAt(0) == '-' || v.charAt(0) == '+') ? 1 : 0;
+                if (i == len || len > 18) return null;
+                long num = 0;
+                for (; i < len; i++) {
+                    int d = v.charAt(i) - '0';
+                    if (d < 0 || d > 9) return null;
+                    num = num * 10 + d;
+                }
+                if (v.charAt(0) == '-') num = -num;
+                long seconds = len >= 13 ? num / 1000 : num;
+                if (seconds < MIN_EPOCH_SECOND || seconds > MAX_EPOCH_SECOND) return null;
+                return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+            }
+        };
+
+        // Restituisce null se il valore non è in questo formato, senza lanciare eccezioni
+        abstract LocalDateTime tryParse(String v);
+    }
+
+    private static final Format[] FORMATS = Format.values();
+
+    private static final long MIN_EPOCH_SECOND = LocalDateTime.MIN.toEpochSecond(ZoneOffset.UTC);
+    private static final long MAX_EPOCH_SECOND = LocalDateTime.MAX.toEpochSecond(ZoneOffset.UTC);
+
+    // Formatter compilati una sola volta, usati solo dal percorso lento
+    private static final DateTimeFormatter[] FALLBACK_FORMATTERS = {
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")
+    };
+    private static final boolean[] FALLBACK_HAS_TIME = {true, true, false, false, true};
+
+    private volatile Format detected;
+
+    // Sceglie il primo formato che riconosce tutti i campioni non vuoti
+    public void sniff(List<String> samples) {
+        for (Format format : FORMATS) {
+            boolean matches = false;
+            for (String sample : samples) {
+                if (sample == null || sample.isBlank()) continue;
+                if (format.tryParse(sample.trim()) == null) {
+                    matches = false;
+                    break;
+                }
+                matches = true;
+            }
+            if (matches) {
+                detected = format;
+                return;
+            }
+        }
+    }
+
+    public Format getDetected() {
+        return detected;
+    }
+
+    public LocalDateTime parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String v = value.trim();
+
+        Format cached = detected;
+        if (cached != null) {
+            LocalDateTime result = cached.tryParse(v);
+            if (result != null) return result;
+        }
+        for (Format format : FORMATS) {
+            if (format == cached) continue;
+            LocalDateTime result = format.tryParse(v);
+            if (result != null) return result;
+        }
+        return parseFallback(v);
+    }
+
+    // Parsing di un singolo valore, senza formato rilevato (es. spesa inserita a mano)
+    public static LocalDateTime parseDate(String value) {
+        return new DateFormatDetector().parse(value);
+    }
+
+    // Percorso lento per i valori fuori dai formati noti: stesse regole di risoluzione dei formatter
+    private static LocalDateTime parseFallback(String v) {
+        try {
+            return ZonedDateTime.parse(v).toLocalDateTime();
+        } catch (DateTimeParseException ignored) {
+        }
+
+        for (int i = 0; i < FALLBACK_FORMATTERS.length; i++) {
+            try {
+                if (FALLBACK_HAS_TIME[i]) {
+                    return LocalDateTime.parse(v, FALLBACK_FORMATTERS[i]);
+                } else {
+                    return LocalDate.parse(v, FALLBACK_FORMATTERS[i]).atStartOfDay();
+                }
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+
+        // Provo come epoch seconds o milliseconds
+        try {
+            long num = Long.parseLong(v);
+            // se ha 13 cifre è millisecondi
+            if (v.length() >= 13) {
+                return LocalDateTime.ofEpochSecond(num / 1000, 0, ZoneOffset.UTC);
+            } else {
+                return LocalDateTime.ofEpochSecond(num, 0, ZoneOffset.UTC);
+            }
+        } catch (NumberFormatException ignored) {
+        }
+
+        // Ultimo tentativo: parse con parser ISO (lasciare che l'eccezione salga)
+        return LocalDateTime.parse(v);
+    }
+
+    private static LocalDateTime parseIso(String v, boolean withOffset) {
+        int len = v.length();
+        if (len < 16 || v.charAt(10) != 'T') return null;
+        LocalDate date = parseYearFirst(v);
+        if (date == null) return null;
+
+        int hour = twoDigits(v, 11);
+        int minute = twoDigits(v, 14);
+        if (v.charAt(13) != ':' || hour < 0 || hour > 23 || minute < 0 || minute > 59) return null;
+
+        int second = 0;
+        int nano = 0;
+        int i = 16;
+        if (i < len && v.charAt(i) == ':') {
+            second = twoDigits(v, i + 1);
+            if (second < 0 || second > 59) return null;
+            i += 3;
+            if (i < len && v.charAt(i) == '.') {
+                int digits = 0;
+                i++;
+                while (i < len && digits < 9) {
+                    int d = v.charAt(i) - '0';
+                    if (d < 0 || d > 9) break;
+                    nano = nano * 10 + d;
+                    digits++;
+                    i++;
+                }
+                if (digits == 0) return null;
+                for (int k = digits; k < 9; k++) nano *= 10;
+            }
+        }
+
+        if (withOffset ? !isOffset(v, i) : i != len) return null;
+        return LocalDateTime.of(date.getYear(), date.getMonthValue(), date.getDayOfMonth(), hour, minute, second, nano);
+    }
+
+    // Z, ±HH:MM oppure ±HH:MM:SS fino alla fine della stringa
+    private static boolean isOffset(String v, int i) {
+        int len = v.length();
+        if (i >= len) return false;
+        char c = v.charAt(i);
+        if (c == 'Z') return i + 1 == len;
+        if (c != '+' && c != '-') return false;
+        if (len != i + 6 && len != i + 9) return false;
+        int hours = twoDigits(v, i + 1);
+        int minutes = twoDigits(v, i + 4);
+        if (v.charAt(i + 3) != ':' || hours < 0 || hours > 17 || minutes < 0 || minutes > 59) return false;
+        if (len == i + 9) {
+            int seconds = twoDigits(v, i + 7);
+            if (v.charAt(i + 6) != ':' || seconds < 0 || seconds > 59) return false;
+        }
+        return true;
+    }
+
+    // yyyy-MM-dd nei primi 10 caratteri
+    private static LocalDate parseYearFirst(String v) {
+        if (v.charAt(4) != '-' || v.charAt(7) != '-') return null;
+        return validDate(fourDigits(v, 0), twoDigits(v, 5), twoDigits(v, 8));
+    }
+
+    // dd/MM/yyyy nei primi 10 caratteri
+    private static LocalDate parseDayFirst(String v) {
+        if (v.charAt(2) != '/' || v.charAt(5) != '/') return null;
+        return validDate(fourDigits(v, 6), twoDigits(v, 3), twoDigits(v, 0));
+    }
+
+    // HH:mm:ss a partire da start
+    private static LocalDateTime atTime(LocalDate date, String v, int start) {
+        if (v.charAt(start + 2) != ':' || v.charAt(start + 5) != ':') return null;
+        int hour = twoDigits(v, start);
+        int minute = twoDigits(v, start + 3);
+        int second = twoDigits(v, start + 6);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) return null;
+        return date.atTime(hour, minute, second);
+    }
+
+    // Le date non valide (es. 30 febbraio) vengono lasciate al percorso lento, che applica le regole dei formatter
+    private static LocalDate validDate(int year, int month, int day) {
+        if (year < 1 || month < 1 || month > 12 || day < 1) return null;
+        int length = switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+        return day > length ? null : LocalDate.of(year, month, day);
+    }
+
+    private static int twoDigits(String v, int i) {
+        if (i + 2 > v.length()) return -1;
+        int a = v.charAt(i) - '0';
+        int b = v.charAt(i + 1) - '0';
+        if (a < 0 || a > 9 || b < 0 || b > 9) return -1;
+        return a * 10 + b;
+    }
+
+    private static int fourDigits(String v, int i) {
+        int hi = twoDigits(v, i);
+        int lo = twoDigits(v, i + 2);
+        return (hi < 0 || lo < 0) ? -1 : hi * 100 + lo;
+    }
+}
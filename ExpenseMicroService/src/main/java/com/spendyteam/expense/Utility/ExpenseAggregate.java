@@ -0,0 +1,29 @@
+package com.spendyteam.expense.Utility;
+
+import java.math.BigDecimal;
+
+// Totale delle spese di un gruppo (giorno, settimana, mese o categoria)
+public class ExpenseAggregate {
+
+    private String key;
+    private BigDecimal total;
+    private long count;
+
+    public ExpenseAggregate(String key, BigDecimal total, long count) {
+        this.key = key;
+        this.total = total;
+        this.count = count;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -3,7 +3,8 @@ import java.util.*;
 
 public class ExpenseClassifier {
 
-    private static final Map<String, List<String>> categoryKeywords = Map.ofEntries(
+    // Le categorie sono in ordine di priorità: se una descrizione contiene parole chiave di più categorie vince la prima
+    private static final List<Map.Entry<String, List<String>>> categoryKeywords = List.of(
             Map.entry("Abbonamenti e Servizi Digitali", List.of(
                     "Disney+", "Netflix", "Google One", "Amazon", "g2a.com"
             )),
@@ -19,8 +20,7 @@ public class ExpenseClassifier {
                     "Young Pizza", "Gruppo la Piadineria", "Mastroianni", "Mariano Balato"
             )),
             Map.entry("Pagamenti e Trasferimenti", List.of(
-                    "Transfer to Revolut user", "Transfer from Revolut user", "Payment from Riccio Giuseppe",
-                    "Payment from Porto Vincenzo", "Payment from Iuliani Antonio", "Payment from Mangopay",
+                    "Transfer to Revolut user", "Transfer from Revolut user", "Payment from Mangopay",
                     "Balance migration", "SumUp"
             )),
             Map.entry("Shopping e Abbigliamento", List.of(
@@ -38,22 +38,28 @@ public class ExpenseClassifier {
             ))
     );
 
-    public static String classify(String description) {
+    // Voci con nomi di persone del vecchio dizionario: diventano regole personali del suo proprietario
+    private static final List<Map.Entry<String, List<String>>> personalKeywords = List.of(
+            Map.entry("Pagamenti e Trasferimenti", List.of(
+                    "Payment from Riccio Giuseppe", "Payment from Porto Vincenzo", "Payment from Iuliani Antonio"
+            ))
+    );
+
+    // Dizionario predefinito, usato per popolare le regole globali al primo avvio
+    public static List<Map.Entry<String, List<String>>> defaultRules() {
+        return categoryKeywords;
+    }
+
+    public static List<Map.Entry<String, List<String>>> personalRules() {
+        return personalKeywords;
+    }
+
+    public static String classify(String description, KeywordMatcher<String> matcher) {
         if (description == null || description.isBlank()) {
             return "Non classificato";
         }
 
-        String descLower = description.toLowerCase();
-
-        for (var entry : categoryKeywords.entrySet()) {
-            for (String keyword : entry.getValue()) {
-                if (descLower.contains(keyword.toLowerCase())) {
-                    return entry.getKey();
-                }
-            }
-        }
-        return "Non classificato";
+        String category = matcher.match(description);
+        return category != null ? category : "Non classificato";
     }
 }
-
-
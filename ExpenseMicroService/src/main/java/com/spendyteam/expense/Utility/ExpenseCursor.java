@@ -0,0 +1,37 @@
+package com.spendyteam.expense.Utility;
+
+import com.spendyteam.expense.Data.Expense;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Posizione nella lista delle spese ordinate per (startedDate, id), codificata in un cursore opaco.
+ * La pagina successiva parte dalla prima spesa che segue questa chiave, senza usare skip.
+ */
+public record ExpenseCursor(LocalDateTime startedDate, String id) {
+
+    private static final String NULL_DATE = "-";
+
+    public static ExpenseCursor after(Expense expense) {
+        return new ExpenseCursor(expense.getStartedDate(), expense.getId());
+    }
+
+    public String encode() {
+        String date = startedDate != null ? startedDate.toString() : NULL_DATE;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((date + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Lancia IllegalArgumentException (o DateTimeParseException) se il cursore non è valido
+    public static ExpenseCursor decode(String cursor) {
+        String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int sep = value.indexOf('|');
+        if (sep < 0 || sep == value.length() - 1) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        String date = value.substring(0, sep);
+        return new ExpenseCursor(NULL_DATE.equals(date) ? null : LocalDateTime.parse(date), value.substring(sep + 1));
+    }
+}
@@ -0,0 +1,90 @@
+package com.spendyteam.expense.Utility;
+
+import com.spendyteam.expense.Data.Expense;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Campi richiesti con il parametro fields degli endpoint di lista (es. "startedDate,amount,category").
+ * Solo questi campi vengono letti da Mongo e serializzati nella risposta.
+ */
+public final class ExpenseFields {
+
+    // Nomi accettati, con il valore corrispondente della spesa
+    private static final Map<String, Function<Expense, Object>> ACCESSORS = new LinkedHashMap<>();
+
+    static {
+        ACCESSORS.put("id", Expense::getId);
+        ACCESSORS.put("type", Expense::getType);
+        ACCESSORS.put("product", Expense::getProduct);
+        ACCESSORS.put("startedDate", Expense::getStartedDate);
+        ACCESSORS.put("completedDate", Expense::getCompletedDate);
+        ACCESSORS.put("description", Expense::getDescription);
+        ACCESSORS.put("amount", Expense::getAmount);
+        ACCESSORS.put("fee", Expense::getFee);
+        ACCESSORS.put("currency", Expense::getCurrency);
+        ACCESSORS.put("state", Expense::getState);
+        ACCESSORS.put("category", Expense::getCategory);
+    }
+
+    // Scorciatoia per i campi di ExpenseSummary
+    public static final String SUMMARY = "summary";
+    private static final List<String> SUMMARY_FIELDS = List.of("id", "startedDate", "amount", "category", "description");
+
+    private final List<String> names;
+
+    private ExpenseFields(List<String> names) {
+        this.names = names;
+    }
+
+    // null se il parametro è assente: in quel caso le spese vengono restituite complete
+    public static ExpenseFields parse(String param) {
+        if (param == null || param.isBlank()) {
+            return null;
+        }
+        if (SUMMARY.equalsIgnoreCase(param.trim())) {
+            return new ExpenseFields(SUMMARY_FIELDS);
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : param.split(",")) {
+            String field = name.trim();
+            if (field.isEmpty()) continue;
+            if (!ACCESSORS.containsKey(field)) {
+                throw new IllegalArgumentException("Unknown field: " + field);
+            }
+            names.add(field);
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("No fields requested");
+        }
+        return new ExpenseFields(List.copyOf(names));
+    }
+
+    public boolean isSummary() {
+        return names.equals(SUMMARY_FIELDS);
+    }
+
+    // Limita i campi letti da Mongo; startedDate e id servono comunque al cursore della paginazione
+    public void applyTo(Query query) {
+        query.fields().include(names.toArray(new String[0]));
+        query.fields().include("startedDate");
+    }
+
+    public Map<String, Object> project(Expense expense) {
+        Map<String, Object> view = new LinkedHashMap<>(names.size() * 2);
+        for (String name : names) {
+            view.put(name, ACCESSORS.get(name).apply(expense));
+        }
+        return view;
+    }
+
+    public List<Map<String, Object>> project(List<Expense> expenses) {
+        List<Map<String, Object>> views = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            views.add(project(expense));
+        }
+        return views;
+    }
+}
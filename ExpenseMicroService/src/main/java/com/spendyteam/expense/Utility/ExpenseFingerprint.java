@@ -0,0 +1,115 @@
+package com.spendyteam.expense.Utility;
+
+import com.spendyteam.expense.Data.Expense;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Impronta SHA-256 del contenuto di una spesa importata. Due righe con gli stessi valori
+ * producono la stessa impronta, così un secondo import dello stesso estratto conto
+ * viene riconosciuto senza confrontare i campi uno per uno. Le righe identiche dello stesso
+ * file (due caffè uguali nello stesso giorno) vengono numerate con Occurrences e restano distinte.
+ */
+public final class ExpenseFingerprint {
+
+    // MessageDigest non è thread-safe: un'istanza per worker
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private ExpenseFingerprint() {
+    }
+
+    // Si usano i valori già convertiti, così formati diversi dello stesso importo o della stessa data coincidono.
+    // Stato e data di completamento restano fuori: cambiano quando un movimento PENDING viene completato
+    public static String of(Expense expense) {
+        StringBuilder sb = new StringBuilder(128);
+        append(sb, expense.getUsername());
+        append(sb, expense.getType());
+        append(sb, expense.getProduct());
+        append(sb, expense.getStartedDate());
+        append(sb, expense.getDescription());
+        append(sb, normalize(expense.getAmount()));
+        append(sb, normalize(expense.getFee()));
+        append(sb, expense.getCurrency());
+
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return HexFormat.of().formatHex(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Il separatore non può comparire nei campi di un CSV già letto, i null restano distinti dalle stringhe vuote
+    private static void append(StringBuilder sb, Object value) {
+        sb.append(value == null ? "\u0000" : value.toString()).append('\u001F');
+    }
+
+    private static String normalize(BigDecimal value) {
+        return value == null ? null : value.stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Numera le righe con lo stesso contenuto nell'ordine del file: la prima tiene l'impronta
+     * del contenuto, le successive ricevono il suffisso -1, -2, ... Reimportare lo stesso file
+     * produce le stesse impronte. Va usata da un solo thread, nell'ordine delle righe.
+     * Le righe identiche hanno la stessa startedDate, che fa parte dell'impronta: si ricordano solo
+     * i contenuti entro window dalla data della riga corrente, così la memoria dipende dalle righe
+     * di pochi giorni e non dalla dimensione del file. Gli estratti conto sono ordinati per data;
+     * in un file mescolato due righe identiche separate da date lontane verrebbero numerate uguali.
+     */
+    public static final class Occurrences {
+
+        private final Duration window;
+
+        // Primi 64 bit dell'impronta: circa 50 byte per riga distinta invece della stringa intera
+        private final Map<Long, Integer> seen = new HashMap<>();
+
+        // Contenuti ricordati, per data, da dimenticare quando la data delle righe si allontana
+        private final TreeMap<LocalDateTime, List<Long>> byDate = new TreeMap<>();
+
+        public Occurrences(Duration window) {
+            this.window = window;
+        }
+
+        // L'impronta della spesa deve essere già quella del contenuto
+        public void number(Expense expense) {
+            LocalDateTime date = expense.getStartedDate();
+            if (date != null) {
+                forget(byDate.headMap(date.minus(window), false));
+                forget(byDate.tailMap(date.plus(window), false));
+            }
+
+            String content = expense.getFingerprint();
+            long key = Long.parseUnsignedLong(content, 0, 16, 16);
+            Integer previous = seen.get(key);
+            if (previous == null) {
+                seen.put(key, 1);
+                byDate.computeIfAbsent(date != null ? date : LocalDateTime.MIN, d -> new ArrayList<>()).add(key);
+            } else {
+                seen.put(key, previous + 1);
+                expense.setFingerprint(content + "-" + previous);
+            }
+        }
+
+        // Contenuti distinti ricordati
+        int size() {
+            return seen.size();
+        }
+
+        private void forget(SortedMap<LocalDateTime, List<Long>> old) {
+            for (List<Long> keys : old.values()) {
+                keys.forEach(seen::remove);
+            }
+            old.clear();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.spendyteam.expense.Utility;
+
+import java.util.Locale;
+
+// Criteri di raggruppamento offerti dall'endpoint di aggregazione
+public enum ExpenseGrouping {
+    DAY("%Y-%m-%d"),
+    // Settimana ISO, es. 2024-W03
+    WEEK("%G-W%V"),
+    MONTH("%Y-%m"),
+    CATEGORY(null);
+
+    // Formato di $dateToString per i raggruppamenti temporali
+    private final String dateFormat;
+
+    ExpenseGrouping(String dateFormat) {
+        this.dateFormat = dateFormat;
+    }
+
+    public String getDateFormat() {
+        return dateFormat;
+    }
+
+    public boolean isByDate() {
+        return dateFormat != null;
+    }
+
+    public static ExpenseGrouping fromParam(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,23 @@
+package com.spendyteam.expense.Utility;
+
+import java.util.List;
+
+// Pagina di spese (complete o ridotte ai campi richiesti); nextCursor è null quando non ci sono altre pagine
+public class ExpensePage {
+
+    private List<?> expenses;
+    private String nextCursor;
+
+    public ExpensePage(List<?> expenses, String nextCursor) {
+        this.expenses = expenses;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<?> getExpenses() {
+        return expenses;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,103 @@
+package com.spendyteam.expense.Utility;
+
+import com.spendyteam.expense.Data.Expense;
+
+import java.util.*;
+
+/**
+ * Converte le righe di un CSV in spese, usando l'header del file
+ * per individuare la colonna di ciascun campo.
+ */
+public class ExpenseRowMapper {
+
+    private final Map<String, Integer> idx;
+    private final ImportContext context;
+    private final KeywordMatcher<String> classifier;
+    private final DateFormatDetector dates = new DateFormatDetector();
+
+    public ExpenseRowMapper(String[] header, ImportContext context, KeywordMatcher<String> classifier) {
+        this.idx = mapHeaderToIndex(header);
+        this.context = context;
+        this.classifier = classifier;
+    }
+
+    // Rileva il formato delle date dalle prime righe del file, prima che i worker inizino il parsing
+    public void sniffDateFormat(List<String[]> rows, int limit) {
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < rows.size() && i < limit; i++) {
+            samples.add(getValueByIndex(rows.get(i), idx.get("startedDate")));
+            samples.add(getValueByIndex(rows.get(i), idx.get("completedDate")));
+        }
+        dates.sniff(samples);
+    }
+
+    public Expense map(String[] line) {
+        Expense expense = new Expense();
+
+        // Helper to get value by canonical name
+        String type = getValueByIndex(line, idx.get("type"));
+        String product = getValueByIndex(line, idx.get("product"));
+        String startedRaw = getValueByIndex(line, idx.get("startedDate"));
+        String completedRaw = getValueByIndex(line, idx.get("completedDate"));
+        String description = getValueByIndex(line, idx.get("description"));
+        String amountRaw = getValueByIndex(line, idx.get("amount"));
+        String feeRaw = getValueByIndex(line, idx.get("fee"));
+        String currency = getValueByIndex(line, idx.get("currency"));
+        String state = getValueByIndex(line, idx.get("state"));
+
+        expense.setType(type);
+        expense.setProduct(product);
+
+        expense.setStartedDate(dates.parse(startedRaw));
+        expense.setCompletedDate(dates.parse(completedRaw));
+
+        expense.setDescription(description);
+        expense.setAmount(AmountParser.parse(amountRaw));
+        expense.setFee(AmountParser.parse(feeRaw));
+        expense.setCurrency(currency);
+        expense.setState(state);
+        expense.setCategory(ExpenseClassifier.classify(description, classifier));
+
+        expense.setUsername(context.getUsername());
+        expense.setFingerprint(ExpenseFingerprint.of(expense));
+        return expense;
+    }
+
+    // Mappa header CSV ai nomi canonici dei campi, usando una lista di sinonimi per ciascun campo
+    private static Map<String, Integer> mapHeaderToIndex(String[] header) {
+        Map<String, Integer> indexMap = new HashMap<>();
+        // Canonical keys
+        Map<String, List<String>> synonyms = new HashMap<>();
+        synonyms.put("type", Arrays.asList("Type", "Tipo"));
+        synonyms.put("product", Arrays.asList("Product", "Prodotto", "item", "description_item"));
+        synonyms.put("startedDate", Arrays.asList("started", "started_date", "starteddate", "Data di inizio", "start_date", "Data"));
+        synonyms.put("completedDate", Arrays.asList("completed", "completed_date", "Data di completamento", "data_fine", "end_date", "Data"));
+        synonyms.put("description", Arrays.asList("Description", "Descrizione", "Operazione"));
+        synonyms.put("amount", Arrays.asList("Amount", "Importo", "value", "valore", "totale"));
+        synonyms.put("fee", Arrays.asList("Fee", "tax", "commission"));
+        synonyms.put("currency", Arrays.asList("Currency", "Valuta", "moneta"));
+        synonyms.put("state", Arrays.asList("State", "Stato", "status","Contabilizzazione"));
+
+        for (int i = 0; i < header.length; i++) {
+            String h = header[i].trim().toLowerCase(Locale.ROOT).replaceAll("[\"]", "");
+            for (Map.Entry<String, List<String>> e : synonyms.entrySet()) {
+                for (String syn : e.getValue()) {
+                    if (h.equals(syn.toLowerCase(Locale.ROOT)) || h.contains(syn.toLowerCase(Locale.ROOT))) {
+                        // Se non è già mappato, mappiamo la prima occorrenza
+                        indexMap.putIfAbsent(e.getKey(), i);
+                    }
+                }
+            }
+        }
+        return indexMap;
+    }
+
+    private static String getValueByIndex(String[] line, Integer idx) {
+        if (idx == null) return null;
+        if (idx < 0 || idx >= line.length) return null;
+        String v = line[idx];
+        if (v == null) return null;
+        v = v.trim();
+        return v.isEmpty() ? null : v;
+    }
+}
@@ -0,0 +1,23 @@
+package com.spendyteam.expense.Utility;
+
+/**
+ * Identità risolta una sola volta all'inizio dell'import e condivisa
+ * da tutte le righe, i batch e gli stage in background dello stesso import.
+ */
+public class ImportContext {
+
+    private final String username;
+    private final ImportProgress progress = new ImportProgress();
+
+    public ImportContext(String username) {
+        this.username = username;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public ImportProgress getProgress() {
+        return progress;
+    }
+}
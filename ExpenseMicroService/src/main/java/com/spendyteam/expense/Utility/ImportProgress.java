@@ -0,0 +1,71 @@
+package com.spendyteam.expense.Utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contatori di avanzamento di un import, aggiornati dagli stage della pipeline
+ * e letti in qualsiasi momento dall'endpoint di polling.
+ */
+public class ImportProgress {
+
+    private volatile long startMillis = System.currentTimeMillis();
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    private final AtomicLong rowsDuplicate = new AtomicLong();
+    private volatile boolean cancelled;
+
+    // Un job asincrono può restare in coda: il throughput si misura dall'avvio effettivo
+    public void start() {
+        startMillis = System.currentTimeMillis();
+    }
+
+    public void rowParsed() {
+        rowsParsed.incrementAndGet();
+    }
+
+    public void rowRejected() {
+        rowsRejected.incrementAndGet();
+    }
+
+    public void rowsWritten(long count) {
+        rowsWritten.addAndGet(count);
+    }
+
+    public void rowsDuplicate(long count) {
+        rowsDuplicate.addAndGet(count);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed.get();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected.get();
+    }
+
+    public long getRowsDuplicate() {
+        return rowsDuplicate.get();
+    }
+
+    public long getElapsedMillis() {
+        return System.currentTimeMillis() - startMillis;
+    }
+
+    public double getRowsPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed > 0 ? getRowsParsed() * 1000.0 / elapsed : getRowsParsed();
+    }
+}
@@ -0,0 +1,94 @@
+package com.spendyteam.expense.Utility;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportSummary {
+
+    private ExpenseStatus status;
+    private String message;
+    private long rowsParsed;
+    private long rowsImported;
+    private long rowsRejected;
+    private long rowsDuplicate;
+    private List<Integer> batches = new ArrayList<>();
+    private List<String> errors = new ArrayList<>();
+    private long elapsedMillis;
+    private double rowsPerSecond;
+
+    public ImportSummary(ExpenseStatus status, String message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    // Registra il numero di righe scritte da un singolo batch
+    public void addBatch(int written) {
+        batches.add(written);
+        rowsImported += written;
+    }
+
+    // Registra l'errore di una riga scartata, fino a un massimo di voci
+    public void addError(String error, int limit) {
+        if (errors.size() < limit) {
+            errors.add(error);
+        }
+    }
+
+    // Chiude il riepilogo con i contatori finali e il throughput dell'import
+    public void complete(ImportContext context) {
+        ImportProgress progress = context.getProgress();
+        this.rowsParsed = progress.getRowsParsed();
+        this.rowsRejected = progress.getRowsRejected();
+        this.rowsDuplicate = progress.getRowsDuplicate();
+        this.elapsedMillis = progress.getElapsedMillis();
+        this.rowsPerSecond = elapsedMillis > 0 ? rowsImported * 1000.0 / elapsedMillis : rowsImported;
+    }
+
+    public ExpenseStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ExpenseStatus status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed;
+    }
+
+    public long getRowsImported() {
+        return rowsImported;
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    public long getRowsDuplicate() {
+        return rowsDuplicate;
+    }
+
+    public List<Integer> getBatches() {
+        return batches;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+}
@@ -0,0 +1,169 @@
+package com.spendyteam.expense.Utility;
+
+import java.util.*;
+
+/**
+ * Automa di Aho-Corasick che cerca molte parole chiave in una sola scansione del testo,
+ * con un costo che non dipende dal numero di parole chiave. Il confronto ignora maiuscole
+ * e minuscole carattere per carattere. Se più parole chiave compaiono nel testo vince quella
+ * aggiunta per prima, così il risultato non dipende dall'ordine in cui vengono trovate.
+ *
+ * @param <T> valore restituito quando una parola chiave viene trovata (es. la categoria)
+ */
+public final class KeywordMatcher<T> {
+
+    private static final int ROOT = 0;
+    private static final int NONE = Integer.MAX_VALUE;
+
+    // Transizioni di ciascun nodo, ordinate per carattere per la ricerca binaria
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    // Priorità migliore tra le parole chiave che terminano nel nodo o nei suoi suffissi
+    private final int[] best;
+    private final List<T> values;
+
+    private KeywordMatcher(char[][] edgeChars, int[][] edgeTargets, int[] fail, int[] best, List<T> values) {
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.best = best;
+        this.values = values;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    // Restituisce il valore della parola chiave con priorità più alta contenuta nel testo, o null
+    public T match(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        int state = ROOT;
+        int found = NONE;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            char c = fold(text.charAt(i));
+            int next;
+            while ((next = step(state, c)) < 0 && state != ROOT) {
+                state = fail[state];
+            }
+            state = next < 0 ? ROOT : next;
+            if (best[state] < found) {
+                found = best[state];
+                if (found == 0) {
+                    break; // nessuna parola chiave può battere la prima
+                }
+            }
+        }
+        return found == NONE ? null : values.get(found);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    private int step(int state, char c) {
+        int i = Arrays.binarySearch(edgeChars[state], c);
+        return i < 0 ? -1 : edgeTargets[state][i];
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    public static final class Builder<T> {
+
+        private final List<Map<Character, Integer>> children = new ArrayList<>();
+        private final List<Integer> terminal = new ArrayList<>();
+        private final List<T> values = new ArrayList<>();
+
+        private Builder() {
+            newNode();
+        }
+
+        // Le parole chiave vuote vengono ignorate; un duplicato mantiene la priorità della prima occorrenza
+        public Builder<T> add(String keyword, T value) {
+            if (keyword == null || keyword.isEmpty()) {
+                return this;
+            }
+            int state = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = fold(keyword.charAt(i));
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = newNode();
+                    children.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (terminal.get(state) == NONE) {
+                terminal.set(state, values.size());
+                values.add(value);
+            }
+            return this;
+        }
+
+        public Builder<T> addAll(Collection<String> keywords, T value) {
+            for (String keyword : keywords) {
+                add(keyword, value);
+            }
+            return this;
+        }
+
+        public KeywordMatcher<T> build() {
+            int n = children.size();
+            char[][] edgeChars = new char[n][];
+            int[][] edgeTargets = new int[n][];
+            for (int s = 0; s < n; s++) {
+                TreeMap<Character, Integer> sorted = new TreeMap<>(children.get(s));
+                edgeChars[s] = new char[sorted.size()];
+                edgeTargets[s] = new int[sorted.size()];
+                int i = 0;
+                for (Map.Entry<Character, Integer> e : sorted.entrySet()) {
+                    edgeChars[s][i] = e.getKey();
+                    edgeTargets[s][i] = e.getValue();
+                    i++;
+                }
+            }
+
+            // Visita in ampiezza: il suffisso di un nodo è sempre più vicino alla radice del nodo stesso
+            int[] fail = new int[n];
+            int[] best = new int[n];
+            best[ROOT] = terminal.get(ROOT);
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int child : edgeTargets[ROOT]) {
+                fail[child] = ROOT;
+                best[child] = terminal.get(child);
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int s = queue.poll();
+                for (int i = 0; i < edgeChars[s].length; i++) {
+                    char c = edgeChars[s][i];
+                    int child = edgeTargets[s][i];
+                    int f = fail[s];
+                    int next;
+                    while ((next = step(edgeChars, edgeTargets, f, c)) < 0 && f != ROOT) {
+                        f = fail[f];
+                    }
+                    fail[child] = next < 0 ? ROOT : next;
+                    best[child] = Math.min(terminal.get(child), best[fail[child]]);
+                    queue.add(child);
+                }
+            }
+            return new KeywordMatcher<>(edgeChars, edgeTargets, fail, best, List.copyOf(values));
+        }
+
+        private int newNode() {
+            children.add(new HashMap<>());
+            terminal.add(NONE);
+            return children.size() - 1;
+        }
+
+        private static int step(char[][] edgeChars, int[][] edgeTargets, int state, char c) {
+            int i = Arrays.binarySearch(edgeChars[state], c);
+            return i < 0 ? -1 : edgeTargets[state][i];
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.spendyteam.expense.Controller;
+
+import com.spendyteam.expense.Service.ExpenseImportService;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExpenseControllerTest {
+
+    @Mock
+    private ExpenseImportService expenseService;
+
+    @InjectMocks
+    private ExpenseController expenseController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(expenseController).build();
+    }
+
+    /**
+     * Verifica che lo stream NDJSON venga scritto da Spring, una spesa per riga
+     */
+    @Test
+    void streamExpenses_Authorized_WritesOneJsonPerLine() throws Exception {
+        StreamingResponseBody body = out -> {
+            out.write("{\"description\":\"Netflix\"}\n".getBytes(StandardCharsets.UTF_8));
+            out.write("{\"description\":\"Lidl\"}\n".getBytes(StandardCharsets.UTF_8));
+        };
+        when(expenseService.streamExpenses(eq("token"), any())).thenReturn(Response.ok(body).build());
+
+        MvcResult started = mockMvc.perform(get("/rest/expense/getExpenses/stream")
+                        .header("Authorization", "Bearer token"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
+        assertArrayEquals(new String[]{"{\"description\":\"Netflix\"}", "{\"description\":\"Lidl\"}"}, lines);
+    }
+
+    /**
+     * Verifica che un token non valido restituisca 401 con il messaggio in chiaro
+     */
+    @Test
+    void streamExpenses_InvalidToken_Returns401() throws Exception {
+        when(expenseService.streamExpenses(eq("token"), any()))
+                .thenReturn(Response.status(Response.Status.UNAUTHORIZED).entity("Invalid or expired token.").build());
+
+        MvcResult started = mockMvc.perform(get("/rest/expense/getExpenses/stream")
+                        .header("Authorization", "Bearer token"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isUnauthorized())
+                .andExpect(content().string("Invalid or expired token."));
+    }
+}
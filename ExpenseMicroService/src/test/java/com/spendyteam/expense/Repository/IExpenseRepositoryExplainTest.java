@@ -0,0 +1,90 @@
+package com.spendyteam.expense.Repository;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.spendyteam.expense.Config.MongoIndexConfig;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Richiede un'istanza Mongo raggiungibile: viene eseguito solo se MONGODB_URI è impostata
+@EnabledIfEnvironmentVariable(named = "MONGODB_URI", matches = ".+")
+class IExpenseRepositoryExplainTest {
+
+    private static final String DATABASE = "spendy_explain_test";
+
+    private static MongoClient client;
+    private static MongoCollection<Document> expenses;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create(System.getenv("MONGODB_URI"));
+        MongoTemplate template = new MongoTemplate(client, DATABASE);
+        template.getDb().drop();
+        MongoIndexConfig.createExpenseIndexes(template);
+
+        // Alcune migliaia di spese su più utenti, così il planner ha qualcosa da scegliere
+        expenses = template.getDb().getCollection("expenses");
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Date date = new Date(1704067200000L + i * 3_600_000L);
+            docs.add(new Document("username", "user" + (i % 50))
+                    .append("startedDate", date)
+                    .append("completedDate", date)
+                    .append("amount", new Decimal128(new BigDecimal((i % 3 == 0 ? "" : "-") + (i % 100) + ".50"))));
+        }
+        expenses.insertMany(docs);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.getDatabase(DATABASE).drop();
+        client.close();
+    }
+
+    /**
+     * Verifica che la lista delle spese di un utente usi un indice e non scorra l'intera collezione
+     */
+    @Test
+    void findExpensesByUsername_UsesIndex() {
+        Document filter = Document.parse(IExpenseRepository.EXPENSES_OF_USER.replace("?0", "'user7'"));
+
+        Document explain = expenses.find(filter).sort(new Document("startedDate", 1)).explain();
+
+        assertNoCollectionScan(explain);
+    }
+
+    /**
+     * Verifica che la ricerca per intervallo di date usi un indice e non scorra l'intera collezione
+     */
+    @Test
+    void findExpensesByUsernameAndDateRange_UsesIndex() {
+        Document filter = Document.parse(IExpenseRepository.EXPENSES_OF_USER_IN_RANGE
+                .replace("?0", "'user7'")
+                .replace("?1", "{ $date: '2024-01-10T00:00:00Z' }")
+                .replace("?2", "{ $date: '2024-02-10T00:00:00Z' }"));
+
+        Document explain = expenses.find(filter).sort(new Document("startedDate", 1)).explain();
+
+        assertNoCollectionScan(explain);
+    }
+
+    private static void assertNoCollectionScan(Document explain) {
+        Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+        String plan = winningPlan.toJson();
+        assertFalse(plan.contains("COLLSCAN"), "piano con scansione completa: " + plan);
+        assertTrue(plan.contains("IXSCAN"), "piano senza indice: " + plan);
+    }
+}
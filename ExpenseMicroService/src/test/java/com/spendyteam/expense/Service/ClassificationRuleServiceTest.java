@@ -0,0 +1,137 @@
+package com.spendyteam.expense.Service;
+
+import com.spendyteam.expense.Data.ClassificationRule;
+import com.spendyteam.expense.Repository.IClassificationRuleRepository;
+import com.spendyteam.expense.Repository.IRuleSetVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClassificationRuleServiceTest {
+
+    @Mock
+    private IClassificationRuleRepository ruleRepository;
+
+    @Mock
+    private IRuleSetVersionRepository versionRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ExpenseRollupService rollupService;
+
+    @Mock
+    private ExpenseCache expenseCache;
+
+    @InjectMocks
+    private ClassificationRuleService service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "cacheSize", 10);
+        lenient().when(ruleRepository.existsByUsernameIsNull()).thenReturn(true);
+        lenient().when(ruleRepository.findByUsernameIsNull(any(Sort.class)))
+                .thenReturn(List.of(rule("g1", null, "Netflix", "Abbonamenti")));
+        lenient().when(versionRepository.findById(anyString())).thenReturn(Optional.empty());
+        service.init();
+    }
+
+    /**
+     * Verifica che le regole dell'utente vincano su quelle globali con la stessa parola chiave
+     * e che gli utenti senza regole usino quelle globali
+     */
+    @Test
+    void classify_UserRulesPrecedeGlobalRules() {
+        when(ruleRepository.findByUsername(eq("user"), any(Sort.class)))
+                .thenReturn(List.of(rule("u1", "user", "Netflix", "Svago")));
+        when(ruleRepository.findByUsername(eq("other"), any(Sort.class))).thenReturn(List.of());
+
+        assertEquals("Svago", service.classify("Netflix abbonamento", "user"));
+        assertEquals("Abbonamenti", service.classify("Netflix abbonamento", "other"));
+    }
+
+    /**
+     * Verifica che il matcher resti in cache e che una nuova regola lo faccia ricompilare
+     */
+    @Test
+    void addRule_InvalidatesCachedMatcher() {
+        when(ruleRepository.findByUsername(eq("user"), any(Sort.class)))
+                .thenReturn(List.of())
+                .thenReturn(List.of(rule("u1", "user", "Netflix", "Svago")));
+        when(ruleRepository.save(any(ClassificationRule.class))).thenAnswer(i -> i.getArgument(0));
+
+        assertEquals("Abbonamenti", service.classify("Netflix", "user"));
+        assertEquals("Abbonamenti", service.classify("Netflix", "user"));
+        verify(ruleRepository, times(1)).findByUsername(eq("user"), any(Sort.class));
+
+        service.addRule("user", "Netflix", "Svago", 0);
+
+        assertEquals("Svago", service.classify("Netflix", "user"));
+        verify(ruleRepository, times(2)).findByUsername(eq("user"), any(Sort.class));
+    }
+
+    /**
+     * Verifica che eliminare una propria regola ricompili il matcher, mentre le regole altrui non si toccano
+     */
+    @Test
+    void deleteRule_OwnRuleInvalidatesCachedMatcher() {
+        ClassificationRule own = rule("u1", "user", "Netflix", "Svago");
+        when(ruleRepository.findByUsername(eq("user"), any(Sort.class)))
+                .thenReturn(List.of(own))
+                .thenReturn(List.of());
+        when(ruleRepository.findById("u1")).thenReturn(Optional.of(own));
+        when(ruleRepository.findById("x1")).thenReturn(Optional.of(rule("x1", "other", "Netflix", "Altro")));
+
+        assertEquals("Svago", service.classify("Netflix", "user"));
+        assertFalse(service.deleteRule("x1", "user"));
+        assertEquals("Svago", service.classify("Netflix", "user"));
+
+        assertTrue(service.deleteRule("u1", "user"));
+        assertEquals("Abbonamenti", service.classify("Netflix", "user"));
+        verify(ruleRepository).delete(own);
+    }
+
+    /**
+     * Verifica che le regole globali modificate direttamente nella collection vengano ricaricate
+     * e che le versioni vengano lette solo per gli utenti in cache
+     */
+    @Test
+    void refresh_GlobalRulesChanged_Recompiles() {
+        when(ruleRepository.findByUsername(eq("user"), any(Sort.class))).thenReturn(List.of());
+        assertEquals("Abbonamenti", service.classify("Netflix", "user"));
+
+        service.refresh();
+        verify(versionRepository).findAllById(List.of("user"));
+        verify(versionRepository, never()).findAll();
+
+        when(ruleRepository.findByUsernameIsNull(any(Sort.class)))
+                .thenReturn(List.of(rule("g1", null, "Netflix", "Streaming")));
+        service.refresh();
+
+        assertEquals("Streaming", service.classify("Netflix", "user"));
+    }
+
+    private static ClassificationRule rule(String id, String username, String keyword, String category) {
+        ClassificationRule rule = new ClassificationRule();
+        ReflectionTestUtils.setField(rule, "id", id);
+        rule.setUsername(username);
+        rule.setKeyword(keyword);
+        rule.setCategory(category);
+        return rule;
+    }
+}
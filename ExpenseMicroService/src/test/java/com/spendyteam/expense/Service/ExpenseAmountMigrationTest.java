@@ -0,0 +1,137 @@
+package com.spendyteam.expense.Service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Repository.IExpenseRepository;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Richiede un'istanza Mongo raggiungibile: viene eseguito solo se MONGODB_URI è impostata
+@EnabledIfEnvironmentVariable(named = "MONGODB_URI", matches = ".+")
+class ExpenseAmountMigrationTest {
+
+    private static final String DATABASE = "spendy_amount_migration_test";
+
+    private static MongoClient client;
+    private static MongoTemplate template;
+
+    private MongoCollection<Document> expenses;
+    private ExpenseRollupService rollupService;
+    private ExpenseCache expenseCache;
+    private ExpenseAmountMigration migration;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(System.getenv("MONGODB_URI"));
+        template = new MongoTemplate(client, DATABASE);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        client.getDatabase(DATABASE).drop();
+        client.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        template.getDb().drop();
+        expenses = template.getDb().getCollection("expenses");
+        expenses.insertMany(List.of(
+                new Document("_id", 1).append("username", "mario").append("amount", "-12.50").append("fee", "0.00"),
+                new Document("_id", 2).append("username", "mario").append("amount", " -3.10 "),
+                new Document("_id", 3).append("username", "mario").append("amount", "40.00"),
+                new Document("_id", 4).append("username", "mario").append("amount", new Decimal128(new BigDecimal("-7.00"))),
+                new Document("_id", 5).append("username", "mario").append("amount", "n/a")));
+
+        rollupService = mock(ExpenseRollupService.class);
+        expenseCache = mock(ExpenseCache.class);
+        migration = new ExpenseAmountMigration();
+        ReflectionTestUtils.setField(migration, "mongoTemplate", template);
+        ReflectionTestUtils.setField(migration, "rollupService", rollupService);
+        ReflectionTestUtils.setField(migration, "expenseCache", expenseCache);
+        // Blocchi piccoli per attraversare più pagine del cursore su _id
+        ReflectionTestUtils.setField(migration, "batchSize", 2);
+    }
+
+    /**
+     * Verifica che importi e commissioni salvati come stringa diventino Decimal128
+     * e che quelli non leggibili restino invariati
+     */
+    @Test
+    void migrate_ConvertsStringAmounts() {
+        long converted = migration.migrate();
+
+        assertEquals(3, converted);
+        assertEquals(new Decimal128(new BigDecimal("-12.50")), amountOf(1));
+        assertEquals(new Decimal128(new BigDecimal("0.00")), byId(1).get("fee"));
+        assertEquals(new Decimal128(new BigDecimal("-3.10")), amountOf(2));
+        assertEquals(new Decimal128(new BigDecimal("40.00")), amountOf(3));
+        assertEquals("n/a", amountOf(5));
+    }
+
+    /**
+     * Verifica che il filtro delle uscite trovi le stesse spese prima e dopo la conversione,
+     * anche nelle query tipizzate su Expense
+     */
+    @Test
+    void negativeFilter_MatchesBothRepresentations() {
+        Document filter = Document.parse(IExpenseRepository.EXPENSES_OF_USER.replace("?0", "'mario'"));
+
+        assertEquals(3, expenses.countDocuments(filter));
+        assertEquals(3, template.count(new Query(ExpenseQueryService.negativeAmount()), "expenses"));
+        assertEquals(3, template.count(new Query(ExpenseQueryService.negativeAmount()), Expense.class));
+
+        migration.migrate();
+
+        assertEquals(3, expenses.countDocuments(filter));
+        assertEquals(3, template.count(new Query(ExpenseQueryService.negativeAmount()), "expenses"));
+        assertEquals(3, template.count(new Query(ExpenseQueryService.negativeAmount()), Expense.class));
+    }
+
+    /**
+     * Verifica che totali e cache vengano rifatti solo dopo la conversione e che il marcatore
+     * impedisca di ripeterla
+     */
+    @Test
+    void complete_RebuildsAfterMigrationAndSavesMarker() {
+        doAnswer(invocation -> {
+            assertEquals(new Decimal128(new BigDecimal("-12.50")), amountOf(1));
+            return null;
+        }).when(rollupService).rebuildAll();
+
+        migration.complete();
+
+        verify(rollupService).rebuildAll();
+        verify(expenseCache).invalidateAll();
+        assertEquals(1, template.getDb().getCollection("expense_migrations")
+                .countDocuments(new Document("_id", "amount-decimal128")));
+
+        migration.start();
+
+        verifyNoMoreInteractions(rollupService, expenseCache);
+    }
+
+    private Object amountOf(int id) {
+        return byId(id).get("amount");
+    }
+
+    private Document byId(int id) {
+        return expenses.find(new Document("_id", id)).first();
+    }
+}
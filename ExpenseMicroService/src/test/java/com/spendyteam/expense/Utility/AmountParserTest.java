@@ -0,0 +1,77 @@
+package com.spendyteam.expense.Utility;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmountParserTest {
+
+    // Caratteri da cui vengono generati gli importi casuali, pesati verso quelli più frequenti nei CSV
+    private static final String ALPHABET = "0123456789012345678901234567890123456789..,,,-- \u00A0€$£¥+eEa";
+
+    /**
+     * Verifica su importi reali che il risultato sia identico a quello del parser originale
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "12.50", "-12.50", "1,234.56", "1.234,56", "1234,56", "€ 12,00", "$1,000,000.00", "-0.0", ".5", "5.",
+            "-.5", "00012", "1 234,56", "+5", "1e5", "1.2.3", "1,2,3", "1.234.567,89", "-", ".", ",", "--1",
+            "1-2", "abc", "", "   ", "123456789012345678", "1234567890123456789", "-99999999999999999999.99"
+    })
+    void parse_SameResultAsLegacyParser(String value) {
+        assertSameAsLegacy(value);
+    }
+
+    /**
+     * Verifica su stringhe generate casualmente (seme fisso) che il risultato, o l'eccezione, sia quello del parser originale
+     */
+    @Test
+    void parse_RandomInput_SameResultAsLegacyParser() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(24);
+            for (int j = 0; j < length; j++) {
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            assertSameAsLegacy(sb.toString());
+        }
+    }
+
+    /**
+     * Verifica che la scala del risultato rispetti le cifre decimali dell'importo
+     */
+    @Test
+    void parse_KeepsScale() {
+        assertEquals(new BigDecimal("1234.50"), AmountParser.parse("1.234,50"));
+        assertEquals(2, AmountParser.parse("€ 12,00").scale());
+    }
+
+    /**
+     * Verifica che un importo nullo valga zero
+     */
+    @Test
+    void parse_Null_ReturnsZero() {
+        assertEquals(BigDecimal.ZERO, AmountParser.parse(null));
+    }
+
+    private static void assertSameAsLegacy(String value) {
+        assertEquals(outcome(() -> LegacyExpenseParsing.parseBigDecimal(value)),
+                outcome(() -> AmountParser.parse(value)), "importo: [" + value + "]");
+    }
+
+    // BigDecimal.toString distingue anche la scala, a differenza di compareTo
+    private static String outcome(Supplier<BigDecimal> parse) {
+        try {
+            return parse.get().toString();
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.spendyteam.expense.Utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Confronta il parsing degli importi originale, basato su espressioni regolari,
+ * con la scansione a singolo passaggio. Si avvia dal main con il classpath dei test.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmountParsingBenchmark {
+
+    @Param({"-12.50", "1.234,56", "€ 1,234.56", "0"})
+    public String value;
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        bh.consume(LegacyExpenseParsing.parseBigDecimal(value));
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole bh) {
+        bh.consume(AmountParser.parse(value));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AmountParsingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
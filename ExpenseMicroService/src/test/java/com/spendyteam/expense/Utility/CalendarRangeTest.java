@@ -0,0 +1,69 @@
+package com.spendyteam.expense.Utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalendarRangeTest {
+
+    /**
+     * Verifica che febbraio e i mesi di 30 giorni terminino all'inizio del mese successivo
+     */
+    @Test
+    void ofMonth_ShortMonths_EndAtNextMonth() {
+        assertEquals(new CalendarRange(LocalDateTime.of(2024, 2, 1, 0, 0), LocalDateTime.of(2024, 3, 1, 0, 0)),
+                CalendarRange.ofMonth(YearMonth.of(2024, 2)));
+        assertEquals(LocalDateTime.of(2024, 5, 1, 0, 0), CalendarRange.ofMonth(YearMonth.of(2024, 4)).end());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 0, 0), CalendarRange.ofMonth(YearMonth.of(2024, 12)).end());
+    }
+
+    /**
+     * Verifica che ogni mese richiesto diventi un intervallo a sé, ordinato e senza ripetizioni
+     */
+    @Test
+    void ofMonths_OneRangePerMonth() {
+        List<CalendarRange> ranges = CalendarRange.ofMonths(List.of(
+                YearMonth.of(2024, 3), YearMonth.of(2024, 1), YearMonth.of(2024, 2), YearMonth.of(2024, 2)));
+
+        assertEquals(List.of(
+                CalendarRange.ofMonth(YearMonth.of(2024, 1)),
+                CalendarRange.ofMonth(YearMonth.of(2024, 2)),
+                CalendarRange.ofMonth(YearMonth.of(2024, 3))), ranges);
+    }
+
+    /**
+     * Verifica che una spesa a cavallo tra due mesi non compaia chiedendo i due mesi insieme,
+     * come non compare chiedendoli uno alla volta
+     */
+    @Test
+    void ofMonths_SpanningExpense_SameAsSingleMonths() {
+        LocalDateTime started = LocalDateTime.of(2024, 1, 31, 22, 0);
+        LocalDateTime completed = LocalDateTime.of(2024, 2, 1, 9, 0);
+
+        assertFalse(CalendarRange.ofMonth(YearMonth.of(2024, 1)).includes(started, completed));
+        assertFalse(CalendarRange.ofMonth(YearMonth.of(2024, 2)).includes(started, completed));
+        for (CalendarRange range : CalendarRange.ofMonths(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 2)))) {
+            assertFalse(range.includes(started, completed));
+        }
+    }
+
+    /**
+     * Verifica che il filtro in memoria applichi gli stessi estremi della query per intervalli
+     */
+    @Test
+    void includes_SameBoundsAsQuery() {
+        CalendarRange march = CalendarRange.ofMonth(YearMonth.of(2024, 3));
+        LocalDateTime start = march.start();
+        LocalDateTime end = march.end();
+
+        assertTrue(march.includes(start, start.plusHours(1)));
+        assertFalse(march.includes(start, start));
+        assertFalse(march.includes(start, end));
+        assertFalse(march.includes(end, end.plusHours(1)));
+        assertFalse(march.includes(null, start.plusHours(1)));
+    }
+}
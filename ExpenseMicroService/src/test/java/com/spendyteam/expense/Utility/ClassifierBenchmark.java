@@ -0,0 +1,68 @@
+package com.spendyteam.expense.Utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misura il costo della classificazione al crescere del dizionario: la ricerca con contains
+ * cresce con il numero di parole chiave, l'automa no. Si avvia dal main con il classpath dei test.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassifierBenchmark {
+
+    @Param({"50", "1000", "10000"})
+    public int keywords;
+
+    // Descrizione che non contiene alcuna parola chiave: il caso peggiore per entrambi
+    private final String description = "Pagamento con carta presso esercente sconosciuto 1234";
+
+    private List<String> dictionary;
+    private KeywordMatcher<String> matcher;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        dictionary = new ArrayList<>(keywords);
+        KeywordMatcher.Builder<String> builder = KeywordMatcher.builder();
+        for (int i = 0; i < keywords; i++) {
+            String keyword = "kw" + Integer.toString(random.nextInt(Integer.MAX_VALUE), 36);
+            dictionary.add(keyword);
+            builder.add(keyword, keyword);
+        }
+        matcher = builder.build();
+    }
+
+    @Benchmark
+    public void naive(Blackhole bh) {
+        String lower = description.toLowerCase();
+        for (String keyword : dictionary) {
+            if (lower.contains(keyword.toLowerCase())) {
+                bh.consume(keyword);
+                return;
+            }
+        }
+        bh.consume(null);
+    }
+
+    @Benchmark
+    public void automaton(Blackhole bh) {
+        bh.consume(matcher.match(description));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ClassifierBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,76 @@
+package com.spendyteam.expense.Utility;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DateFormatDetectorTest {
+
+    /**
+     * Verifica che il nuovo parser restituisca lo stesso risultato (o la stessa eccezione) del parser originale
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2024-01-15 10:23:45", "2024-01-15T10:23:45", "2024-01-15T10:23", "2024-01-15T10:23:45.123",
+            "2024-01-15T10:23:45.", "2024-01-15T10:23:45Z", "2024-01-15T10:23:45+01:00", "2024-01-15T10:23:45-00:00",
+            "2024-01-15T10:23:45+00:00:30", "2024-01-15T10:23+01:00", "2024-01-15T10:23:45+18:00",
+            "2024-01-15T10:23:45.123456789Z", "2024-01-15T10:23:45.1234567891", "2024-02-30", "2024-02-30 10:00:00",
+            "2023-02-29", "2024-02-29", "15/01/2024", "31/04/2024", "15/01/2024 10:23:45", "1700000000",
+            "1700000000000", "-1700000000", "+1700000000", "20240115", "0", "2024-01-15 10:23", "2024-01-15 24:00:00",
+            "0000-01-01", "0001-01-01 00:00:00", "  2024-01-15  ", "2024-01-15t10:23:45", "2024-01-15T10:23:45z",
+            "abc", "2024-13-01", "99999999999999999999", "2024-01-15T10:23:45+01:00[Europe/Rome]", "2024-01-15T10:23:45+01",
+            "", "   "
+    })
+    void parse_SameResultAsLegacyParser(String value) {
+        assertEquals(outcome(() -> LegacyExpenseParsing.parseToLocalDateTime(value)),
+                outcome(() -> DateFormatDetector.parseDate(value)));
+    }
+
+    /**
+     * Verifica che il formato venga rilevato dai campioni ignorando i valori vuoti
+     */
+    @Test
+    void sniff_DetectsFormatFromSamples() {
+        DateFormatDetector detector = new DateFormatDetector();
+        detector.sniff(List.of("15/01/2024 10:23:45", "", "16/01/2024 08:00:00"));
+
+        assertEquals(DateFormatDetector.Format.EU_DATE_TIME, detector.getDetected());
+        assertEquals(LocalDateTime.of(2024, 1, 17, 9, 30), detector.parse("17/01/2024 09:30:00"));
+    }
+
+    /**
+     * Verifica che un valore in un formato diverso da quello rilevato venga comunque convertito
+     */
+    @Test
+    void parse_ValueOutsideDetectedFormat_StillParsed() {
+        DateFormatDetector detector = new DateFormatDetector();
+        detector.sniff(List.of("2024-01-15"));
+
+        assertEquals(DateFormatDetector.Format.DATE, detector.getDetected());
+        assertEquals(LocalDateTime.of(2024, 1, 15, 10, 0), detector.parse("15/01/2024 10:00:00"));
+    }
+
+    /**
+     * Verifica che con campioni di formati incompatibili non venga scelto alcun formato
+     */
+    @Test
+    void sniff_MixedFormats_NoFormatDetected() {
+        DateFormatDetector detector = new DateFormatDetector();
+        detector.sniff(List.of("2024-01-15", "15/01/2024"));
+
+        assertNull(detector.getDetected());
+    }
+
+    private static String outcome(java.util.function.Supplier<LocalDateTime> parse) {
+        try {
+            return String.valueOf(parse.get());
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.spendyteam.expense.Utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Confronta il parsing delle date originale con quello a formato rilevato.
+ * Si avvia dal main con il classpath dei test.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateParsingBenchmark {
+
+    // Un valore per ciascuno dei formati accettati, dal più economico al più costoso per il parser originale
+    @Param({"2024-01-15T10:23:45Z", "2024-01-15 10:23:45", "2024-01-15", "15/01/2024 10:23:45", "1700000000000"})
+    public String value;
+
+    private DateFormatDetector detector;
+
+    @Setup
+    public void setup() {
+        detector = new DateFormatDetector();
+        detector.sniff(List.of(value));
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        bh.consume(LegacyExpenseParsing.parseToLocalDateTime(value));
+    }
+
+    @Benchmark
+    public void detected(Blackhole bh) {
+        bh.consume(detector.parse(value));
+    }
+
+    @Benchmark
+    public void undetected(Blackhole bh) {
+        bh.consume(DateFormatDetector.parseDate(value));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DateParsingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,39 @@
+package com.spendyteam.expense.Utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseCursorTest {
+
+    /**
+     * Verifica che un cursore codificato e decodificato restituisca la stessa posizione
+     */
+    @Test
+    void decode_EncodedCursor_SamePosition() {
+        ExpenseCursor cursor = new ExpenseCursor(LocalDateTime.of(2024, 1, 15, 10, 23, 45, 123_000_000), "65a4f0c2e4b0a1b2c3d4e5f6");
+
+        assertEquals(cursor, ExpenseCursor.decode(cursor.encode()));
+    }
+
+    /**
+     * Verifica che un cursore su una spesa senza data venga conservato
+     */
+    @Test
+    void decode_NullDate_SamePosition() {
+        ExpenseCursor cursor = new ExpenseCursor(null, "65a4f0c2e4b0a1b2c3d4e5f6");
+
+        assertEquals(cursor, ExpenseCursor.decode(cursor.encode()));
+    }
+
+    /**
+     * Verifica che un cursore manomesso venga rifiutato
+     */
+    @Test
+    void decode_InvalidCursor_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> ExpenseCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> ExpenseCursor.decode("bm8tc2VwYXJhdG9y"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.spendyteam.expense.Utility;
+
+import com.spendyteam.expense.Data.Expense;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseFieldsTest {
+
+    /**
+     * Verifica che senza parametro le spese restino complete
+     */
+    @Test
+    void parse_Blank_Null() {
+        assertNull(ExpenseFields.parse(null));
+        assertNull(ExpenseFields.parse("  "));
+    }
+
+    /**
+     * Verifica che un campo non previsto venga rifiutato
+     */
+    @Test
+    void parse_UnknownField_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> ExpenseFields.parse("amount,username"));
+        assertThrows(IllegalArgumentException.class, () -> ExpenseFields.parse(" , "));
+    }
+
+    /**
+     * Verifica che la proiezione contenga solo i campi richiesti, nell'ordine richiesto
+     */
+    @Test
+    void project_RequestedFields_OnlyThoseFields() {
+        Expense expense = new Expense();
+        expense.setStartedDate(LocalDateTime.of(2024, 3, 1, 9, 30));
+        expense.setAmount(new BigDecimal("-12.50"));
+        expense.setCategory("Spesa");
+        expense.setDescription("Supermercato");
+
+        Map<String, Object> view = ExpenseFields.parse("category, amount").project(expense);
+
+        assertEquals(List.of("category", "amount"), List.copyOf(view.keySet()));
+        assertEquals(new BigDecimal("-12.50"), view.get("amount"));
+    }
+
+    /**
+     * Verifica che l'alias summary corrisponda ai campi di ExpenseSummary
+     */
+    @Test
+    void parse_Summary_IsSummary() {
+        assertTrue(ExpenseFields.parse("summary").isSummary());
+        assertFalse(ExpenseFields.parse("amount").isSummary());
+    }
+}
@@ -0,0 +1,127 @@
+package com.spendyteam.expense.Utility;
+
+import com.spendyteam.expense.Data.Expense;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseFingerprintTest {
+
+    /**
+     * Verifica che la stessa riga importata due volte produca la stessa impronta,
+     * anche se l'importo è scritto con una scala diversa
+     */
+    @Test
+    void of_SameContent_SameFingerprint() {
+        Expense first = expense("user", "Netflix", "-12.50");
+        Expense second = expense("user", "Netflix", "-12.5");
+
+        assertEquals(ExpenseFingerprint.of(first), ExpenseFingerprint.of(second));
+        assertEquals(64, ExpenseFingerprint.of(first).length());
+    }
+
+    /**
+     * Verifica che utenti, descrizioni o importi diversi producano impronte diverse
+     */
+    @Test
+    void of_DifferentContent_DifferentFingerprint() {
+        String base = ExpenseFingerprint.of(expense("user", "Netflix", "-12.50"));
+
+        assertNotEquals(base, ExpenseFingerprint.of(expense("other", "Netflix", "-12.50")));
+        assertNotEquals(base, ExpenseFingerprint.of(expense("user", "Netflix ", "-12.50")));
+        assertNotEquals(base, ExpenseFingerprint.of(expense("user", "Netflix", "-12.51")));
+    }
+
+    /**
+     * Verifica che un campo mancante non coincida con un campo vuoto
+     */
+    @Test
+    void of_NullAndEmptyField_DifferentFingerprint() {
+        Expense withNull = expense("user", null, "-12.50");
+        Expense withEmpty = expense("user", "", "-12.50");
+
+        assertNotEquals(ExpenseFingerprint.of(withNull), ExpenseFingerprint.of(withEmpty));
+    }
+
+    /**
+     * Verifica che due righe identiche dello stesso file restino distinte
+     * e che reimportare lo stesso file produca le stesse impronte
+     */
+    @Test
+    void occurrences_IdenticalRows_NumberedInFileOrder() {
+        List<String> first = importFile();
+        List<String> second = importFile();
+
+        assertEquals(3, new HashSet<>(first).size());
+        assertEquals(first.get(0) + "-1", first.get(2));
+        assertEquals(first, second);
+    }
+
+    /**
+     * Verifica che lo stesso movimento esportato prima PENDING e poi COMPLETED abbia la stessa impronta
+     */
+    @Test
+    void of_StateAndCompletedDateIgnored() {
+        Expense pending = expense("user", "Netflix", "-12.50");
+        pending.setState("PENDING");
+        pending.setCompletedDate(null);
+
+        assertEquals(ExpenseFingerprint.of(expense("user", "Netflix", "-12.50")), ExpenseFingerprint.of(pending));
+    }
+
+    /**
+     * Verifica che le impronte ricordate restino quelle dei giorni vicini alla riga corrente,
+     * anche per un file lungo, e che le righe identiche vicine siano comunque numerate
+     */
+    @Test
+    void occurrences_MemoryBoundedByWindow() {
+        ExpenseFingerprint.Occurrences occurrences = new ExpenseFingerprint.Occurrences(Duration.ofDays(1));
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+        for (int day = 0; day < 365; day++) {
+            for (int i = 0; i < 2; i++) {
+                Expense row = expense("user", "Bar Big", "-1.20");
+                row.setStartedDate(start.plusDays(day));
+                row.setFingerprint(ExpenseFingerprint.of(row));
+                occurrences.number(row);
+                assertEquals(i == 1, row.getFingerprint().endsWith("-1"));
+            }
+        }
+
+        assertTrue(occurrences.size() <= 3, "impronte ricordate: " + occurrences.size());
+    }
+
+    // Due caffè uguali nello stesso giorno e una riga diversa in mezzo
+    private static List<String> importFile() {
+        List<Expense> rows = List.of(expense("user", "Bar Big", "-1.20"), expense("user", "Netflix", "-12.50"),
+                expense("user", "Bar Big", "-1.20"));
+        ExpenseFingerprint.Occurrences occurrences = new ExpenseFingerprint.Occurrences(Duration.ofDays(7));
+        List<String> fingerprints = new ArrayList<>();
+        for (Expense row : rows) {
+            row.setFingerprint(ExpenseFingerprint.of(row));
+            occurrences.number(row);
+            fingerprints.add(row.getFingerprint());
+        }
+        return fingerprints;
+    }
+
+    private static Expense expense(String username, String description, String amount) {
+        Expense expense = new Expense();
+        expense.setUsername(username);
+        expense.setType("CARD_PAYMENT");
+        expense.setStartedDate(LocalDateTime.of(2024, 1, 15, 10, 23, 45));
+        expense.setCompletedDate(LocalDateTime.of(2024, 1, 16, 8, 0));
+        expense.setDescription(description);
+        expense.setAmount(new BigDecimal(amount));
+        expense.setFee(BigDecimal.ZERO);
+        expense.setCurrency("EUR");
+        expense.setState("COMPLETED");
+        return expense;
+    }
+}
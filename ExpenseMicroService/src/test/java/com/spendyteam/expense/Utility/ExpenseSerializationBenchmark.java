@@ -0,0 +1,92 @@
+package com.spendyteam.expense.Utility;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.spendyteam.expense.Data.Expense;
+import com.spendyteam.expense.Data.ExpenseSummary;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Confronta la serializzazione di una lista di spese completa con quella proiettata
+ * tramite il parametro fields e con il record ExpenseSummary. Le dimensioni in byte
+ * di ciascuna risposta vengono stampate nel setup. Si avvia dal main con il classpath dei test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpenseSerializationBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private List<Expense> full;
+    private List<Map<String, Object>> projected;
+    private List<ExpenseSummary> summaries;
+
+    @Setup
+    public void setup() throws Exception {
+        full = new ArrayList<>(ROWS);
+        summaries = new ArrayList<>(ROWS);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 8, 0);
+        for (int i = 0; i < ROWS; i++) {
+            Expense expense = new Expense();
+            expense.setType("CARD_PAYMENT");
+            expense.setProduct("Current");
+            expense.setStartedDate(start.plusMinutes(37L * i));
+            expense.setCompletedDate(start.plusMinutes(37L * i + 5));
+            expense.setDescription("Pagamento presso esercente " + (i % 250));
+            expense.setAmount(new BigDecimal("-" + (i % 500) + "." + (i % 100)));
+            expense.setFee(BigDecimal.ZERO);
+            expense.setCurrency("EUR");
+            expense.setState("COMPLETED");
+            expense.setCategory("Spesa");
+            expense.setUsername("benchmark");
+            expense.setFingerprint(Integer.toHexString(i * 31) + "ab12cd34ef56ab12cd34ef56ab12cd34ef56ab12cd34ef56ab12cd34");
+            full.add(expense);
+            summaries.add(new ExpenseSummary(expense.getId(), expense.getStartedDate(), expense.getAmount(),
+                    expense.getCategory(), expense.getDescription()));
+        }
+        projected = ExpenseFields.parse("startedDate,amount,category").project(full);
+
+        System.out.printf("%nfull: %d bytes, fields=startedDate,amount,category: %d bytes, summary: %d bytes%n",
+                mapper.writeValueAsBytes(full).length,
+                mapper.writeValueAsBytes(projected).length,
+                mapper.writeValueAsBytes(summaries).length);
+    }
+
+    @Benchmark
+    public byte[] full() throws Exception {
+        return mapper.writeValueAsBytes(full);
+    }
+
+    @Benchmark
+    public byte[] fields() throws Exception {
+        return mapper.writeValueAsBytes(projected);
+    }
+
+    @Benchmark
+    public byte[] summary() throws Exception {
+        return mapper.writeValueAsBytes(summaries);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExpenseSerializationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,110 @@
+package com.spendyteam.expense.Utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordMatcherTest {
+
+    /**
+     * Verifica che il confronto ignori maiuscole e minuscole
+     */
+    @Test
+    void match_IgnoresCase() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder().add("Netflix", "digitale").build();
+
+        assertEquals("digitale", matcher.match("PAGAMENTO NETFLIX.COM"));
+        assertNull(matcher.match("Netfli"));
+    }
+
+    /**
+     * Verifica che, se il testo contiene più parole chiave, vinca quella aggiunta per prima
+     * anche quando compare più avanti nel testo
+     */
+    @Test
+    void match_MultipleKeywords_FirstAddedWins() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("Airport", "Trasporti")
+                .add("Hotel", "Alloggi")
+                .build();
+
+        assertEquals("Trasporti", matcher.match("Hotel Airport Roma"));
+    }
+
+    /**
+     * Verifica che una parola chiave contenuta in un'altra venga trovata tramite i collegamenti di suffisso
+     */
+    @Test
+    void match_KeywordInsideLongerKeyword_Found() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("gas", "Carburante")
+                .add("vegas", "Viaggi")
+                .build();
+
+        assertEquals("Carburante", matcher.match("Las Vegas"));
+    }
+
+    /**
+     * Verifica che con il dizionario predefinito la descrizione venga assegnata alla categoria dichiarata per prima
+     */
+    @Test
+    void classify_UsesDeclarationOrder() {
+        KeywordMatcher.Builder<String> builder = KeywordMatcher.builder();
+        ExpenseClassifier.defaultRules().forEach(entry -> builder.addAll(entry.getValue(), entry.getKey()));
+        KeywordMatcher<String> matcher = builder.build();
+
+        assertEquals("Abbonamenti e Servizi Digitali", ExpenseClassifier.classify("Amazon Market", matcher));
+        assertEquals("Non classificato", ExpenseClassifier.classify("Bonifico", matcher));
+        assertEquals("Non classificato", ExpenseClassifier.classify(" ", matcher));
+    }
+
+    /**
+     * Verifica su dizionari e testi casuali (seme fisso) che l'automa dia lo stesso risultato
+     * della ricerca con contains su ogni parola chiave, nell'ordine in cui sono state aggiunte
+     */
+    @Test
+    void match_RandomDictionaries_SameResultAsNaiveSearch() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            List<String> keywords = new ArrayList<>();
+            KeywordMatcher.Builder<String> builder = KeywordMatcher.builder();
+            int size = 1 + random.nextInt(40);
+            for (int i = 0; i < size; i++) {
+                String keyword = randomText(random, 1 + random.nextInt(5));
+                keywords.add(keyword);
+                builder.add(keyword, keyword);
+            }
+            KeywordMatcher<String> matcher = builder.build();
+
+            for (int i = 0; i < 50; i++) {
+                String text = randomText(random, random.nextInt(30));
+                assertEquals(naiveMatch(keywords, text), matcher.match(text), "testo: " + text);
+            }
+        }
+    }
+
+    private static String naiveMatch(List<String> keywords, String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (String keyword : keywords) {
+            if (lower.contains(keyword.toLowerCase(Locale.ROOT))) {
+                return keyword;
+            }
+        }
+        return null;
+    }
+
+    // Alfabeto ridotto per avere molte sovrapposizioni tra parole chiave
+    private static String randomText(Random random, int length) {
+        String alphabet = "abcABC ";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.spendyteam.expense.Utility;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Copia invariata del parsing originale delle righe CSV, usata dai test
+ * e dai benchmark come riferimento per i parser ottimizzati.
+ */
+final class LegacyExpenseParsing {
+
+    private LegacyExpenseParsing() {
+    }
+
+    static LocalDateTime parseToLocalDateTime(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String v = value.trim();
+
+        try {
+            return java.time.ZonedDateTime.parse(v).toLocalDateTime();
+        } catch (DateTimeParseException ignored) {
+        }
+
+        // Provo più formati
+        List<String> patterns = Arrays.asList(
+                "yyyy-MM-dd HH:mm:ss",
+                "yyyy-MM-dd'T'HH:mm:ss",
+                "yyyy-MM-dd",
+                "dd/MM/yyyy",
+                "dd/MM/yyyy HH:mm:ss"
+        );
+
+        for (String p : patterns) {
+            try {
+                DateTimeFormatter f = DateTimeFormatter.ofPattern(p);
+                if (p.contains("H") || p.contains("h")) {
+                    return LocalDateTime.parse(v, f);
+                } else {
+                    LocalDate d = LocalDate.parse(v, f);
+                    return d.atStartOfDay();
+                }
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+
+        // Provo come epoch seconds o milliseconds
+        try {
+            long num = Long.parseLong(v);
+            // se ha 13 cifre è millisecondi
+            if (v.length() >= 13) {
+                return LocalDateTime.ofEpochSecond(num / 1000, 0, ZoneOffset.UTC);
+            } else {
+                return LocalDateTime.ofEpochSecond(num, 0, ZoneOffset.UTC);
+            }
+        } catch (NumberFormatException ignored) {
+        }
+
+        // Ultimo tentativo: parse con parser ISO (lasciare che l'eccezione salga)
+        return LocalDateTime.parse(v);
+    }
+
+    static BigDecimal parseBigDecimal(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return BigDecimal.ZERO;
+        }
+        String v = value.trim();
+        // Rimuovo simboli di valuta e spazi
+        v = v.replaceAll("[€$£¥]", "").trim();
+        v = v.replaceAll("\u00A0", "").trim(); // non-breaking space
+
+        // Se contiene sia '.' che ',', suppongo che '.' sia decimale o ','? Gestisco come thousands separator rimuovendo quello che sembra essere migliaia
+        if (v.contains(",") && v.contains(".")) {
+            // se ultimo separatore è '.' assumo '.' come decimale e rimuovo le virgole
+            int lastComma = v.lastIndexOf(',');
+            int lastDot = v.lastIndexOf('.');
+            if (lastDot > lastComma) {
+                v = v.replaceAll(",", "");
+            } else {
+                v = v.replaceAll("\\.", "");
+                v = v.replaceAll(",", ".");
+            }
+        } else if (v.contains(",") && !v.contains(".")) {
+            // potrebbe essere formato europeo 1.234,56 oppure 1234,56 -> sostituisco la virgola con punto
+            v = v.replaceAll(",", ".");
+        }
+
+        // Rimuovo tutto quello che non è cifra, punto o meno
+        v = v.replaceAll("[^0-9.\\-]", "");
+
+        if (v.isEmpty()) return BigDecimal.ZERO;
+
+        return new BigDecimal(v);
+    }
+}
@@ -1,13 +1,16 @@
 package com.spendy.gateway.Client;
 
+import com.spendy.gateway.JWT.TokenManager;
 import com.spendy.gateway.Service.GatwayClientService;
 import com.spendy.gateway.Utility.GatewayResult;
 import com.spendy.gateway.Utility.StatusGateway;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.Map;
 
 @RestController
@@ -17,18 +20,8 @@ public class GatewayClientController {
     @Autowired
     private GatwayClientService gatwayClientService;
 
-    @PostMapping(value = "/generate-token", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> generateToken(@RequestBody Map<String, String> body) {
-        System.out.println(body);
-
-        GatewayResult result = gatwayClientService.generateToken(body.get("username"));
-
-        if (result.getStatusGateway() == StatusGateway.TOKEN_GENERATION_SUCCESS) {
-            return ResponseEntity.ok(Map.of("token", result.getToken()));
-        } else {
-            return ResponseEntity.status(500).body("Token generation failed");
-        }
-    }
+    @Autowired
+    private TokenManager tokenManager;
 
     @PostMapping(value = "/verify-token", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> verifyToken(@RequestBody Map<String, String> body) {
@@ -41,4 +34,12 @@ public class GatewayClientController {
             return ResponseEntity.status(401).body("Token verification failed");
         }
     }
+
+    // Chiavi pubbliche per la verifica locale dei token nei microservizi
+    @GetMapping(value = "/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic())
+                .body(tokenManager.jwks());
+    }
 }
\ No newline at end of file
@@ -17,6 +17,10 @@ public class JWTReactiveAuthenticationManager implements ReactiveAuthenticationM
 
     @Override
     public Mono<Authentication> authenticate(Authentication authentication) {
+        // Il token è già stato verificato da JWTAuthenticationFilter nella stessa richiesta
+        if (authentication.isAuthenticated()) {
+            return Mono.just(authentication);
+        }
         Object credentials = authentication.getCredentials();
         if (credentials == null) {
             return Mono.error(new RuntimeException("No JWT token found in credentials"));
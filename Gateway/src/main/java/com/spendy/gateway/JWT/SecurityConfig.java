@@ -31,8 +31,10 @@ public class SecurityConfig {
                 }))
                 .authorizeExchange(exchange -> exchange
                         .pathMatchers(HttpMethod.OPTIONS).permitAll()
-                        .pathMatchers(HttpMethod.POST, "/gateway/generate-token").permitAll()
                         .pathMatchers(HttpMethod.POST, "/gateway/verify-token").permitAll()
+                        .pathMatchers(HttpMethod.GET, "/gateway/jwks.json").permitAll()
+                        // Scrittura interna del servizio House, raggiungibile solo sulla porta dell'Auth
+                        .pathMatchers("/Auth/rest/auth/setHouse", "/Auth/rest/auth/setHouse/").denyAll()
                         .pathMatchers("/Auth/**").permitAll()
                         .pathMatchers("/Expense/**").authenticated()
                         .anyExchange().authenticated()
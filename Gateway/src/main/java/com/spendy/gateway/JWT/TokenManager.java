@@ -1,11 +1,29 @@
 package com.spendy.gateway.JWT;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import com.spendy.security.Jwks;
+import com.spendy.security.JwtSecrets;
+import com.spendy.security.JwtVerifier;
+import com.spendy.security.PublicKeyRing;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class TokenManager {
@@ -13,26 +31,107 @@ public class TokenManager {
     @Value("${jwt.secret}")
     private String secretKey; // sposta la chiave in application.properties
 
-    @Value("${jwt.expiration}")
-    private long EXPIRATION_TIME; // in millisecondi
+    // Chiavi pubbliche RSA <kid>.pem: se la cartella non è configurata si verificano ancora i token HS256 firmati con jwt.secret
+    @Value("${jwt.keys.dir:}")
+    private String keysDir;
+
+    // Token già verificati, indicizzati per hash: il token in chiaro non resta in memoria
+    @Value("${jwt.cache.max-size:100000}")
+    private long cacheMaxSize;
+
+    // Durata in cache dei token senza scadenza
+    @Value("${jwt.cache.max-ttl-ms:3600000}")
+    private long cacheMaxTtl;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private record VerifiedToken(String subject, long expiresAt) {
+    }
+
+    private PublicKeyRing keyRing;
+    private JwtVerifier verifier;
+    private Cache<String, VerifiedToken> verified;
+    private Timer verification;
+
+    // Chiavi e verificatore vengono preparati una volta: la stringa Base64 non viene più decodificata a ogni richiesta
+    @PostConstruct
+    public void init() throws IOException {
+        // I token HS256 già emessi restano validi finché jwt.secret è configurata
+        byte[] legacySecret = secretKey == null || secretKey.isBlank() ? null : JwtSecrets.decode(secretKey);
+        if (keysDir != null && !keysDir.isBlank()) {
+            keyRing = PublicKeyRing.load(Path.of(keysDir));
+        } else if (legacySecret == null) {
+            throw new IllegalStateException("Neither jwt.keys.dir nor jwt.secret is configured");
+        }
+        verifier = new JwtVerifier(keyRing, legacySecret);
+
+        // Ogni voce scade insieme al suo token
+        verified = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        long remaining = value.expiresAt() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, Math.min(remaining, cacheMaxTtl)));
+                    }
 
-    public String generateToken(String username) {
-        return Jwts.builder()
-                .setSubject(username)
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(SignatureAlgorithm.HS256, secretKey)
-                .compact();
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "jwtTokens");
+        verification = Timer.builder("jwt.verification")
+                .description("Verifica della firma dei token non presenti in cache")
+                .register(meterRegistry);
+    }
+
+    // Chiavi pubbliche pubblicate su /gateway/jwks.json, vuoto finché si firma in HS256
+    public Map<String, Object> jwks() {
+        return Jwks.toJson(keyRing != null ? keyRing.publicKeys() : Map.of());
     }
 
     public String verifyToken(String token) {
+        if (token == null) {
+            return null;
+        }
+        String key = hash(token);
+        VerifiedToken cached = verified.getIfPresent(key);
+        if (cached != null) {
+            return cached.subject();
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            JwtVerifier.VerifiedToken claims = verifier.verify(token);
+            if (claims == null) {
+                return null; // token non valido o scaduto
+            }
+            Date expiration = claims.expiresAt();
+            long expiresAt = expiration != null ? expiration.getTime() : System.currentTimeMillis() + cacheMaxTtl;
+            if (claims.subject() != null) {
+                verified.put(key, new VerifiedToken(claims.subject(), expiresAt));
+            }
+            return claims.subject();
+        } finally {
+            sample.stop(verification);
+        }
+    }
+
+    private static String hash(String token) {
         try {
-            Claims claims = Jwts.parser()
-                    .setSigningKey(secretKey)
-                    .parseClaimsJws(token)
-                    .getBody();
-            return claims.getSubject();
-        } catch (Exception e) {
-            return null; // token non valido o scaduto
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
-}
\ No newline at end of file
+}
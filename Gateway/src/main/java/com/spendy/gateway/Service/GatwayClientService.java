@@ -12,21 +12,6 @@ public class GatwayClientService {
     @Autowired
     private TokenManager tokenManager;
 
-    public GatewayResult generateToken(String username) {
-        if (username == null || username.isEmpty()) {
-            throw new IllegalArgumentException("Username cannot be null or empty");
-        }
-
-        String token = tokenManager.generateToken(username);
-
-        if (token != null) {
-            return new GatewayResult(StatusGateway.TOKEN_GENERATION_SUCCESS, token);
-        } else {
-            return new GatewayResult(StatusGateway.TOKEN_GENERATION_FAILED, null);
-        }
-
-    }
-
     public GatewayResult verifyToken(String token) {
         if (token == null || token.isEmpty()) {
             throw new IllegalArgumentException("Token cannot be null or empty");
@@ -1,8 +1,6 @@
 package com.spendy.gateway.Utility;
 
 public enum StatusGateway {
-    TOKEN_GENERATION_SUCCESS,
-    TOKEN_GENERATION_FAILED,
     USER_NOT_FOUND,
     USER_ALREADY_EXISTS,
     INVALID_CREDENTIALS,
@@ -0,0 +1,67 @@
+package com.spendy.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.*;
+
+/**
+ * Conversione tra chiavi pubbliche RSA e documento JWKS (RFC 7517).
+ */
+public final class Jwks {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private Jwks() {
+    }
+
+    public static Map<String, Object> toJson(Map<String, RSAPublicKey> keys) {
+        List<Map<String, Object>> jwks = new ArrayList<>(keys.size());
+        keys.forEach((kid, key) -> {
+            Map<String, Object> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "RSA");
+            jwk.put("kid", kid);
+            jwk.put("use", "sig");
+            jwk.put("alg", "RS256");
+            jwk.put("n", base64Url(key.getModulus()));
+            jwk.put("e", base64Url(key.getPublicExponent()));
+            jwks.add(jwk);
+        });
+        return Map.of("keys", jwks);
+    }
+
+    // Le chiavi non RSA o non di firma vengono ignorate
+    public static Map<String, RSAPublicKey> parse(String json) {
+        try {
+            Map<String, RSAPublicKey> keys = new LinkedHashMap<>();
+            for (JsonNode jwk : MAPPER.readTree(json).path("keys")) {
+                if (!"RSA".equals(jwk.path("kty").asText()) || !jwk.hasNonNull("kid")
+                        || (jwk.has("use") && !"sig".equals(jwk.path("use").asText()))) {
+                    continue;
+                }
+                BigInteger modulus = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("n").asText()));
+                BigInteger exponent = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("e").asText()));
+                keys.put(jwk.get("kid").asText(), (RSAPublicKey) KeyFactory.getInstance("RSA")
+                        .generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+            }
+            return keys;
+        } catch (GeneralSecurityException | IllegalArgumentException | IOException e) {
+            throw new IllegalArgumentException("Invalid JWKS document", e);
+        }
+    }
+
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        // Il bit di segno di BigInteger non fa parte della rappresentazione JWK
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,97 @@
+package com.spendy.security;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copia locale del JWKS del gateway, aggiornata in background a intervalli fissi.
+ * La verifica dei token legge solo la mappa in memoria: un kid sconosciuto (chiave appena ruotata)
+ * anticipa l'aggiornamento successivo, al massimo una volta ogni minRefreshGap, senza attenderlo.
+ */
+public final class JwksClient implements KeyResolver, AutoCloseable {
+
+    private static final System.Logger LOG = System.getLogger(JwksClient.class.getName());
+
+    private final URI uri;
+    private final Duration refreshInterval;
+    private final Duration minRefreshGap;
+    private final HttpClient http;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong lastAttempt = new AtomicLong();
+
+    private volatile Map<String, RSAPublicKey> keys = Map.of();
+
+    public JwksClient(URI uri, Duration refreshInterval, Duration minRefreshGap) {
+        this.uri = uri;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshGap = minRefreshGap;
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "jwks-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Primo caricamento sincrono; se il gateway non risponde ci riprova l'aggiornamento periodico
+    public void start() {
+        refresh();
+        long interval = refreshInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public RSAPublicKey publicKey(String kid) {
+        RSAPublicKey key = kid == null ? null : keys.get(kid);
+        if (key == null && kid != null) {
+            long now = System.currentTimeMillis();
+            long last = lastAttempt.get();
+            if (now - last >= minRefreshGap.toMillis() && lastAttempt.compareAndSet(last, now)) {
+                scheduler.execute(this::refresh);
+            }
+        }
+        return key;
+    }
+
+    public Map<String, RSAPublicKey> keys() {
+        return keys;
+    }
+
+    // Restituisce false se il JWKS non è stato letto: le chiavi precedenti restano valide
+    public boolean refresh() {
+        lastAttempt.set(System.currentTimeMillis());
+        try {
+            HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofSeconds(5))
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                LOG.log(System.Logger.Level.WARNING, "JWKS refresh from {0} failed with status {1}", uri, response.statusCode());
+                return false;
+            }
+            keys = Map.copyOf(Jwks.parse(response.body()));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            LOG.log(System.Logger.Level.WARNING, "JWKS refresh from " + uri + " failed", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
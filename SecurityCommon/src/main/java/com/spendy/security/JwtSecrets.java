@@ -0,0 +1,22 @@
+package com.spendy.security;
+
+import java.util.Base64;
+
+/**
+ * Chiave HS256 condivisa (jwt.secret). jjwt, usato in origine dal gateway, la interpreta
+ * come stringa Base64: qui viene decodificata allo stesso modo.
+ */
+public final class JwtSecrets {
+
+    private JwtSecrets() {
+    }
+
+    public static byte[] decode(String secret) {
+        String value = secret.trim();
+        try {
+            return Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return Base64.getUrlDecoder().decode(value);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.spendy.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import java.security.interfaces.RSAPublicKey;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Verifica firma e scadenza dei token di sessione. I token RS256 vengono verificati con la chiave
+ * del loro kid; gli HS256 solo se è configurata la jwt.secret, così le sessioni aperte prima
+ * del passaggio a RS256 restano valide fino alla scadenza.
+ */
+public final class JwtVerifier {
+
+    public record VerifiedToken(String subject, Date expiresAt) {
+    }
+
+    // Verificatore costruito per la chiave di un kid: se dopo una rotazione il kid indica un'altra chiave viene ricostruito
+    private record RsaVerifier(RSAPublicKey key, JWTVerifier verifier) {
+    }
+
+    private final KeyResolver keys;
+    private final JWTVerifier hs256;
+
+    // Solo i kid che il KeyResolver conosce: token con kid inventati non fanno crescere la mappa
+    private final Map<String, RsaVerifier> rs256 = new ConcurrentHashMap<>();
+
+    // keys o legacySecret possono essere null, non entrambi
+    public JwtVerifier(KeyResolver keys, byte[] legacySecret) {
+        if (keys == null && legacySecret == null) {
+            throw new IllegalArgumentException("No verification keys configured");
+        }
+        this.keys = keys;
+        this.hs256 = legacySecret != null ? JWT.require(Algorithm.HMAC256(legacySecret)).build() : null;
+    }
+
+    // null se il token non è valido, è scaduto o è firmato con una chiave sconosciuta
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            DecodedJWT decoded = JWT.decode(token);
+            DecodedJWT verified;
+            if ("RS256".equals(decoded.getAlgorithm()) && keys != null) {
+                String kid = decoded.getKeyId();
+                RSAPublicKey key = keys.publicKey(kid);
+                if (key == null) {
+                    if (kid != null) {
+                        rs256.remove(kid);
+                    }
+                    return null;
+                }
+                verified = rs256Verifier(kid, key).verify(decoded);
+            } else if ("HS256".equals(decoded.getAlgorithm()) && hs256 != null) {
+                verified = hs256.verify(decoded);
+            } else {
+                return null;
+            }
+            return new VerifiedToken(verified.getSubject(), verified.getExpiresAt());
+        } catch (JWTVerificationException e) {
+            return null;
+        }
+    }
+
+    private JWTVerifier rs256Verifier(String kid, RSAPublicKey key) {
+        if (kid == null) {
+            return JWT.require(Algorithm.RSA256(key, null)).build();
+        }
+        RsaVerifier cached = rs256.get(kid);
+        if (cached == null || !cached.key().equals(key)) {
+            cached = new RsaVerifier(key, JWT.require(Algorithm.RSA256(key, null)).build());
+            rs256.put(kid, cached);
+        }
+        return cached.verifier();
+    }
+
+    public String subject(String token) {
+        VerifiedToken verified = verify(token);
+        return verified != null ? verified.subject() : null;
+    }
+}
@@ -0,0 +1,13 @@
+package com.spendy.security;
+
+import java.security.interfaces.RSAPublicKey;
+
+/**
+ * Chiave pubblica con cui verificare i token firmati con un certo kid.
+ */
+@FunctionalInterface
+public interface KeyResolver {
+
+    // null se il kid non è conosciuto
+    RSAPublicKey publicKey(String kid);
+}
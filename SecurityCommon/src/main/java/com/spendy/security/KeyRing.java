@@ -0,0 +1,92 @@
+package com.spendy.security;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Chiavi RSA di firma, identificate dal kid. Una sola è attiva e firma i nuovi token;
+ * le altre restano nel JWKS per verificare i token già emessi finché non scadono.
+ * Rotazione: si aggiunge la nuova chiave, la si pubblica, poi la si rende attiva.
+ */
+public final class KeyRing implements KeyResolver {
+
+    private final String activeKid;
+    private final Map<String, RSAPrivateCrtKey> privateKeys;
+    private final Map<String, RSAPublicKey> publicKeys;
+
+    public KeyRing(String activeKid, Map<String, RSAPrivateCrtKey> privateKeys) {
+        if (!privateKeys.containsKey(activeKid)) {
+            throw new IllegalArgumentException("Active key " + activeKid + " is not in the key ring");
+        }
+        this.activeKid = activeKid;
+        this.privateKeys = Map.copyOf(privateKeys);
+        Map<String, RSAPublicKey> publics = new LinkedHashMap<>();
+        privateKeys.forEach((kid, key) -> publics.put(kid, publicOf(key)));
+        this.publicKeys = Collections.unmodifiableMap(publics);
+    }
+
+    // Un file <kid>.pem per chiave, in formato PKCS#8 ("BEGIN PRIVATE KEY")
+    public static KeyRing load(Path dir, String activeKid) throws IOException {
+        Map<String, RSAPrivateCrtKey> keys = new LinkedHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.pem")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                keys.put(name.substring(0, name.length() - ".pem".length()),
+                        parsePrivateKey(Files.readString(file, StandardCharsets.US_ASCII)));
+            }
+        }
+        if (keys.isEmpty()) {
+            throw new IllegalStateException("No signing keys found in " + dir);
+        }
+        return new KeyRing(activeKid, keys);
+    }
+
+    public String activeKid() {
+        return activeKid;
+    }
+
+    public RSAPrivateCrtKey activePrivateKey() {
+        return privateKeys.get(activeKid);
+    }
+
+    @Override
+    public RSAPublicKey publicKey(String kid) {
+        return kid == null ? null : publicKeys.get(kid);
+    }
+
+    public Map<String, RSAPublicKey> publicKeys() {
+        return publicKeys;
+    }
+
+    static RSAPrivateCrtKey parsePrivateKey(String pem) {
+        String body = pem.replaceAll("-----(BEGIN|END) PRIVATE KEY-----", "").replaceAll("\\s", "");
+        try {
+            return (RSAPrivateCrtKey) KeyFactory.getInstance("RSA")
+                    .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(body)));
+        } catch (GeneralSecurityException | IllegalArgumentException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid RSA private key", e);
+        }
+    }
+
+    private static RSAPublicKey publicOf(RSAPrivateCrtKey key) {
+        try {
+            return (RSAPublicKey) KeyFactory.getInstance("RSA")
+                    .generatePublic(new RSAPublicKeySpec(key.getModulus(), key.getPublicExponent()));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
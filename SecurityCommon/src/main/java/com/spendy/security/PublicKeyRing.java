@@ -0,0 +1,67 @@
+package com.spendy.security;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Chiavi pubbliche RSA di verifica, identificate dal kid, per i servizi che verificano i token
+ * senza firmarli: le chiavi private restano solo a chi li emette (KeyRing).
+ * Si ricavano dalle chiavi di firma con openssl pkey -in <kid>.pem -pubout.
+ */
+public final class PublicKeyRing implements KeyResolver {
+
+    private final Map<String, RSAPublicKey> publicKeys;
+
+    public PublicKeyRing(Map<String, RSAPublicKey> publicKeys) {
+        this.publicKeys = Collections.unmodifiableMap(new LinkedHashMap<>(publicKeys));
+    }
+
+    // Un file <kid>.pem per chiave, in formato X.509 ("BEGIN PUBLIC KEY"); una chiave privata viene rifiutata
+    public static PublicKeyRing load(Path dir) throws IOException {
+        Map<String, RSAPublicKey> keys = new LinkedHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.pem")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String pem = Files.readString(file, StandardCharsets.US_ASCII);
+                if (pem.contains("PRIVATE KEY")) {
+                    throw new IllegalStateException(file + " contains a private key: only public keys are needed to verify tokens");
+                }
+                keys.put(name.substring(0, name.length() - ".pem".length()), parsePublicKey(pem));
+            }
+        }
+        if (keys.isEmpty()) {
+            throw new IllegalStateException("No public keys found in " + dir);
+        }
+        return new PublicKeyRing(keys);
+    }
+
+    @Override
+    public RSAPublicKey publicKey(String kid) {
+        return kid == null ? null : publicKeys.get(kid);
+    }
+
+    public Map<String, RSAPublicKey> publicKeys() {
+        return publicKeys;
+    }
+
+    static RSAPublicKey parsePublicKey(String pem) {
+        String body = pem.replaceAll("-----(BEGIN|END) PUBLIC KEY-----", "").replaceAll("\\s", "");
+        try {
+            return (RSAPublicKey) KeyFactory.getInstance("RSA")
+                    .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(body)));
+        } catch (GeneralSecurityException | IllegalArgumentException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid RSA public key", e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.spendy.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+
+import java.util.Date;
+
+/**
+ * Firma i token di sessione: RS256 con la chiave attiva del KeyRing, il cui kid finisce
+ * nell'header, oppure HS256 con jwt.secret per le installazioni che non hanno ancora chiavi RSA.
+ */
+public final class TokenSigner {
+
+    private final Algorithm algorithm;
+    private final String kid;
+
+    private TokenSigner(Algorithm algorithm, String kid) {
+        this.algorithm = algorithm;
+        this.kid = kid;
+    }
+
+    public static TokenSigner rs256(KeyRing keyRing) {
+        return new TokenSigner(Algorithm.RSA256(keyRing.publicKey(keyRing.activeKid()), keyRing.activePrivateKey()),
+                keyRing.activeKid());
+    }
+
+    public static TokenSigner hs256(byte[] secret) {
+        return new TokenSigner(Algorithm.HMAC256(secret), null);
+    }
+
+    public String sign(String subject, long expiresAtMillis) {
+        return JWT.create()
+                .withKeyId(kid)
+                .withSubject(subject)
+                .withExpiresAt(new Date(expiresAtMillis))
+                .sign(algorithm);
+    }
+}
@@ -0,0 +1,144 @@
+package com.spendy.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwksClientTest {
+
+    private final RSAPrivateCrtKey key1 = Keys.rsa();
+    private final RSAPrivateCrtKey key2 = Keys.rsa();
+
+    // JWKS servito dal finto gateway, sostituibile durante il test
+    private final AtomicReference<KeyRing> published = new AtomicReference<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+    private URI uri;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/gateway/jwks.json", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = new ObjectMapper().writeValueAsBytes(Jwks.toJson(published.get().publicKeys()));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/gateway/jwks.json");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    /**
+     * Verifica che le chiavi pubblicate nel JWKS vengano rilette identiche
+     */
+    @Test
+    void parse_RoundTripsPublicKeys() throws Exception {
+        KeyRing ring = new KeyRing("k1", Map.of("k1", key1, "k2", key2));
+        String json = new ObjectMapper().writeValueAsString(Jwks.toJson(ring.publicKeys()));
+
+        Map<String, RSAPublicKey> parsed = Jwks.parse(json);
+
+        assertEquals(ring.publicKeys(), parsed);
+    }
+
+    /**
+     * Verifica che dopo l'avvio i token vengano verificati senza ulteriori richieste al gateway
+     */
+    @Test
+    void verify_KnownKid_NoNetworkCall() {
+        KeyRing ring = new KeyRing("k1", Map.of("k1", key1));
+        published.set(ring);
+        try (JwksClient client = new JwksClient(uri, Duration.ofHours(1), Duration.ofHours(1))) {
+            client.start();
+            JwtVerifier verifier = new JwtVerifier(client, null);
+            String token = TokenSigner.rs256(ring).sign("user", System.currentTimeMillis() + 60_000);
+
+            for (int i = 0; i < 100; i++) {
+                assertEquals("user", verifier.subject(token));
+            }
+            assertEquals(1, requests.get());
+        }
+    }
+
+    /**
+     * Verifica che un kid sconosciuto anticipi l'aggiornamento e che la nuova chiave venga poi accettata
+     */
+    @Test
+    void verify_RotatedKey_RefreshedInBackground() throws Exception {
+        published.set(new KeyRing("k1", Map.of("k1", key1)));
+        try (JwksClient client = new JwksClient(uri, Duration.ofHours(1), Duration.ZERO)) {
+            client.start();
+            JwtVerifier verifier = new JwtVerifier(client, null);
+
+            KeyRing rotated = new KeyRing("k2", Map.of("k1", key1, "k2", key2));
+            published.set(rotated);
+            String token = TokenSigner.rs256(rotated).sign("user", System.currentTimeMillis() + 60_000);
+
+            // La prima verifica non attende la rete: rifiuta e chiede l'aggiornamento
+            assertNull(verifier.subject(token));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (client.keys().get("k2") == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("user", verifier.subject(token));
+        }
+    }
+
+    /**
+     * Verifica che un errore del gateway lasci valide le chiavi già scaricate
+     */
+    @Test
+    void refresh_GatewayError_KeepsPreviousKeys() {
+        published.set(new KeyRing("k1", Map.of("k1", key1)));
+        try (JwksClient client = new JwksClient(uri, Duration.ofHours(1), Duration.ofHours(1))) {
+            client.start();
+            server.removeContext("/gateway/jwks.json");
+            server.createContext("/gateway/jwks.json", exchange -> {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+            });
+
+            assertFalse(client.refresh());
+            assertNotNull(client.publicKey("k1"));
+        }
+    }
+
+    /**
+     * Verifica che il JWKS contenga i campi RFC 7517 senza lo zero iniziale del modulo
+     */
+    @Test
+    void toJson_Base64UrlWithoutSignByte() {
+        KeyRing ring = new KeyRing("k1", Map.of("k1", key1));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> jwk = ((List<Map<String, Object>>) Jwks.toJson(ring.publicKeys()).get("keys")).get(0);
+
+        assertEquals("RSA", jwk.get("kty"));
+        assertEquals("RS256", jwk.get("alg"));
+        assertEquals("AQAB", jwk.get("e"));
+        assertFalse(((String) jwk.get("n")).contains("="));
+        assertEquals(256, Base64.getUrlDecoder().decode((String) jwk.get("n")).length);
+    }
+}
@@ -0,0 +1,49 @@
+package com.spendy.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublicKeyRingTest {
+
+    private final RSAPrivateCrtKey signingKey = Keys.rsa();
+
+    /**
+     * Verifica che le chiavi pubbliche lette dalla cartella verifichino i token firmati con la chiave privata
+     */
+    @Test
+    void load_PublicPem_VerifiesTokensOfSigningKey(@TempDir Path dir) throws Exception {
+        KeyRing signer = new KeyRing("k1", Map.of("k1", signingKey));
+        Files.writeString(dir.resolve("k1.pem"), pem("PUBLIC KEY", signer.publicKey("k1").getEncoded()));
+
+        PublicKeyRing keys = PublicKeyRing.load(dir);
+        String token = TokenSigner.rs256(signer).sign("user", System.currentTimeMillis() + 60_000);
+
+        assertEquals(signer.publicKeys(), keys.publicKeys());
+        assertEquals("user", new JwtVerifier(keys, null).subject(token));
+    }
+
+    /**
+     * Verifica che una chiave privata nella cartella venga rifiutata invece di essere caricata
+     */
+    @Test
+    void load_PrivatePem_Fails(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("k1.pem"), pem("PRIVATE KEY", signingKey.getEncoded()));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> PublicKeyRing.load(dir));
+
+        assertTrue(e.getMessage().contains("k1.pem"));
+    }
+
+    private static String pem(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\n" + Base64.getMimeEncoder().encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+    }
+}